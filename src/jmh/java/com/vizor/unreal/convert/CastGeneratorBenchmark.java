@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.provider.ProtoTypesProvider;
+import com.vizor.unreal.provider.TypesProvider;
+import com.vizor.unreal.provider.UnrealTypesProvider;
+import com.vizor.unreal.tree.CppField;
+import com.vizor.unreal.tree.CppNamespace;
+import com.vizor.unreal.tree.CppStruct;
+import com.vizor.unreal.util.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.vizor.unreal.tree.CppType.Kind.Struct;
+import static com.vizor.unreal.tree.CppType.plain;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Generation of casts between proto (C++) structures and their Unreal counterparts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CastGeneratorBenchmark
+{
+    @Param({"20", "200"})
+    public int numStructs;
+
+    private static final String[] fieldTypes = {"string", "int32", "double", "bool", "bytes", "map<string, int32>"};
+
+    private final List<Tuple<CppStruct, CppStruct>> structures = new ArrayList<>();
+
+    @Setup
+    public void setUp()
+    {
+        final TypesProvider ueProvider = new UnrealTypesProvider();
+        final TypesProvider protoProvider = new ProtoTypesProvider();
+
+        for (int i = 0; i < numStructs; i++)
+        {
+            final List<CppField> ueFields = new ArrayList<>();
+            final List<CppField> protoFields = new ArrayList<>();
+
+            for (int f = 0; f < fieldTypes.length; f++)
+            {
+                final String name = "field_" + f;
+
+                ueFields.add(new CppField(ueProvider.get(fieldTypes[f]), ueProvider.fixFieldName(name, false)));
+                protoFields.add(new CppField(protoProvider.get(fieldTypes[f]), protoProvider.fixFieldName(name, false)));
+            }
+
+            // Repeated fields are casted element by element
+            ueFields.add(new CppField(ueProvider.arrayOf(ueProvider.get("int32")), "Values"));
+            protoFields.add(new CppField(protoProvider.arrayOf(protoProvider.get("int32")), "values"));
+
+            final CppStruct ueStruct = new CppStruct(plain("FBench_M" + i, Struct), ueFields);
+            final CppStruct protoStruct = new CppStruct(plain("M" + i, Struct), protoFields);
+
+            structures.add(Tuple.of(protoStruct, ueStruct));
+        }
+    }
+
+    @Benchmark
+    public CppNamespace genCasts()
+    {
+        return new CastGenerator().genCasts(structures);
+    }
+}
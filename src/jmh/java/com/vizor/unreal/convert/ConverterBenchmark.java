@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.SyntheticCorpus;
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.writer.MemoryOutputSink;
+import org.apache.logging.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static java.nio.file.Files.createTempDirectory;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.logging.log4j.core.config.Configurator.setLevel;
+
+/**
+ * A complete conversion of a synthetic schema: parsing, generation and writing. Generated files are kept in memory,
+ * so results aren't affected by the file system. Outputs of the first conversion are kept, so the next ones only
+ * compare the generated content with the existing files. Compare results of different schema sizes to see how the
+ * converter scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConverterBenchmark
+{
+    @Param({"25", "50", "100"})
+    public int numFiles;
+
+    @Param({"20"})
+    public int numMessages;
+
+    @Param({"1", "4"})
+    public int jobs;
+
+    private Config config;
+    private final MemoryOutputSink sink = new MemoryOutputSink();
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        setLevel("com.vizor.unreal", Level.WARN);
+
+        final Path root = createTempDirectory("cornerstone-bench");
+        final Path srcPath = root.resolve("protos");
+        new SyntheticCorpus(0).files(numFiles).messages(numMessages).write(srcPath);
+
+        config = Config.get().copy();
+        config.setSrcPath(srcPath.toString());
+        config.setDstPublicPath(root.resolve("Public").toString());
+        config.setDstPrivatePath(root.resolve("Private").toString());
+        config.setJobs(jobs);
+    }
+
+    @Benchmark
+    public void convert()
+    {
+        new Converter(config, false, sink).convert();
+    }
+}
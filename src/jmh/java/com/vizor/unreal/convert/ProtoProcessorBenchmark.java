@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.squareup.wire.schema.Location;
+import com.squareup.wire.schema.internal.parser.ProtoFileElement;
+import com.vizor.unreal.SyntheticCorpus;
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.config.DestinationConfig;
+import com.vizor.unreal.preprocess.NestedTypesRemover;
+import org.apache.logging.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static com.squareup.wire.schema.internal.parser.ProtoParser.parse;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Paths.get;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.logging.log4j.core.config.Configurator.setLevel;
+
+/**
+ * Conversion of a single proto file, importing two other files. Messages share lots of fields, so struct
+ * consolidation has some work to do. Generated files are discarded rather than written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtoProcessorBenchmark
+{
+    @Param({"20", "100"})
+    public int numMessages;
+
+    private ProtoProcessorArgs arg;
+    private ImportGraph importGraph;
+    private final SchemaSymbols symbols = new SchemaSymbols();
+    private Config config;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        setLevel("com.vizor.unreal", Level.WARN);
+
+        final Path dstPath = createTempDirectory("cornerstone-bench");
+        final DestinationConfig dst = new DestinationConfig(dstPath.resolve("Public"), dstPath.resolve("Private"));
+
+        config = Config.get().copy();
+        config.setDstPublicPath(dst.pathPublic.toString());
+        config.setDstPrivatePath(dst.pathPrivate.toString());
+
+        // The benchmarked file (the last one) imports the others, so they have to be resolved too
+        final SortedMap<String, String> sources = new SyntheticCorpus(0).files(3).messages(numMessages).depth(2)
+            .generate();
+
+        final List<ProtoProcessorArgs> args = new ArrayList<>();
+        final List<Path> paths = new ArrayList<>();
+
+        for (final Map.Entry<String, String> e : sources.entrySet())
+        {
+            final Path path = get(e.getKey());
+
+            final ProtoFileElement parsed = parse(Location.get(e.getKey()), e.getValue());
+
+            args.add(new ProtoProcessorArgs(new NestedTypesRemover().process(parsed), path,
+                    dst, "Bench", "hash" + args.size()));
+            paths.add(path);
+        }
+
+        importGraph = new ImportGraph(paths);
+        for (final ProtoProcessorArgs a : args)
+        {
+            symbols.register(a);
+            importGraph.add(a);
+        }
+
+        arg = args.get(args.size() - 1);
+    }
+
+    @Benchmark
+    public void run(final Blackhole blackhole)
+    {
+        new ProtoProcessor(arg, importGraph, symbols, config, ConversionProfile.disabled(), blackhole::consume).run();
+    }
+}
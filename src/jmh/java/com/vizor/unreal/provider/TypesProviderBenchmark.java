@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.provider;
+
+import com.vizor.unreal.tree.CppType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.vizor.unreal.tree.CppType.Kind.Struct;
+import static com.vizor.unreal.tree.CppType.plain;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Type lookups, as done for every field, RPC argument and message of a proto file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypesProviderBenchmark
+{
+    /** Number of user-defined types, visible to the provider */
+    @Param({"100", "2000"})
+    public int numTypes;
+
+    private static final int typesPerPackage = 20;
+
+    private TypesProvider provider;
+    private SymbolTable.Scope scope;
+    private String qualifiedName;
+    private String shortName;
+    private String genericName;
+
+    @Setup
+    public void setUp()
+    {
+        final SymbolTable table = new SymbolTable();
+        final List<Object> owners = new ArrayList<>();
+
+        for (int i = 0; i < numTypes; i++)
+        {
+            final String owner = "p" + (i / typesPerPackage);
+            if (i % typesPerPackage == 0)
+                owners.add(owner);
+
+            table.register(owner, "bench." + owner + ".M" + i, plain("FBench_M" + i, Struct));
+        }
+
+        scope = table.scope(owners);
+
+        provider = new UnrealTypesProvider();
+        provider.setScope(scope);
+
+        // The last registered type, the worst case for linear scans
+        final int last = numTypes - 1;
+        qualifiedName = "bench.p" + (last / typesPerPackage) + ".M" + last;
+        shortName = "M" + last;
+        genericName = "map<string, " + qualifiedName + ">";
+    }
+
+    /**
+     * Every proto file gets its own providers.
+     */
+    @Benchmark
+    public TypesProvider construct()
+    {
+        return new UnrealTypesProvider();
+    }
+
+    @Benchmark
+    public CppType builtin()
+    {
+        return provider.get("int32");
+    }
+
+    @Benchmark
+    public CppType qualified()
+    {
+        return provider.get(qualifiedName);
+    }
+
+    @Benchmark
+    public CppType unqualified()
+    {
+        return provider.get(shortName);
+    }
+
+    /**
+     * The first lookup of a short name within a proto file, i.e. not served from the provider's cache.
+     */
+    @Benchmark
+    public CppType unqualifiedFirst()
+    {
+        provider.setScope(scope);
+        return provider.get(shortName);
+    }
+
+    @Benchmark
+    public CppType generic()
+    {
+        return provider.get(genericName);
+    }
+}
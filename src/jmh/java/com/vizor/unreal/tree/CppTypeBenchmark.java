@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.tree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.vizor.unreal.tree.CppType.Kind.Primitive;
+import static com.vizor.unreal.tree.CppType.Kind.Struct;
+import static com.vizor.unreal.tree.CppType.plain;
+import static com.vizor.unreal.tree.CppType.wildcardGeneric;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Hashing, comparison and rendering of types, which happen whenever types are put into sets and maps (e.g. while
+ * ordering messages) or written into the generated code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CppTypeBenchmark
+{
+    private CppType plainType;
+    private CppType stringType;
+    private CppType mapType;
+    private CppType genericType;
+    private CppType equalGenericType;
+    private CppType otherGenericType;
+
+    @Setup
+    public void setUp()
+    {
+        plainType = plain("FBench_Message", Struct);
+
+        stringType = plain("FString", Struct);
+        mapType = wildcardGeneric("TMap", Struct, 2);
+
+        genericType = mapType.makeGeneric(plain("FString", Struct), plain("FBench_Message", Struct));
+        equalGenericType = mapType.makeGeneric(plain("FString", Struct), plain("FBench_Message", Struct));
+        otherGenericType = mapType.makeGeneric(plain("FString", Struct), plain("int32", Primitive));
+    }
+
+    @Benchmark
+    public int plainHashCode()
+    {
+        return plainType.hashCode();
+    }
+
+    @Benchmark
+    public int genericHashCode()
+    {
+        return genericType.hashCode();
+    }
+
+    @Benchmark
+    public boolean genericEquals()
+    {
+        return genericType.equals(equalGenericType);
+    }
+
+    /**
+     * Compiling a generic, as done for every map and repeated field.
+     */
+    @Benchmark
+    public CppType makeGeneric()
+    {
+        return mapType.makeGeneric(stringType, plainType);
+    }
+
+    @Benchmark
+    public boolean genericNotEquals()
+    {
+        return genericType.equals(otherGenericType);
+    }
+
+    /**
+     * Rendering a type name, as done by generators many times per field and RPC.
+     */
+    @Benchmark
+    public String genericToString()
+    {
+        return genericType.toString();
+    }
+
+    /**
+     * Rendering a type, as written by the printer.
+     */
+    @Benchmark
+    public String genericPrintedName()
+    {
+        return genericType.makeRef().getPrintedName();
+    }
+}
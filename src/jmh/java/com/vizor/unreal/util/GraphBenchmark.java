@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.util;
+
+import com.vizor.unreal.util.Graph.GraphHasCyclesException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Topological ordering of an acyclic graph, the way messages and imports are ordered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark
+{
+    @Param({"100", "2000"})
+    public int numVertices;
+
+    /** Edges per vertex */
+    private static final int numEdges = 4;
+
+    private Graph<Integer> graph;
+
+    @Setup
+    public void setUp()
+    {
+        final List<Integer> vertices = new ArrayList<>(numVertices);
+        for (int i = 0; i < numVertices; i++)
+            vertices.add(i);
+
+        graph = new Graph<>(vertices);
+
+        // Edges only lead to vertices with lower indices, so there are no cycles
+        final Random random = new Random(42);
+        for (int i = 1; i < numVertices; i++)
+        {
+            for (int e = 0; e < numEdges; e++)
+                graph.addEdge(i, random.nextInt(i));
+        }
+    }
+
+    @Benchmark
+    public int[] getOrder() throws GraphHasCyclesException
+    {
+        return graph.getOrder();
+    }
+}
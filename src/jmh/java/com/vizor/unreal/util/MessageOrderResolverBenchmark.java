@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.util;
+
+import com.vizor.unreal.tree.CppField;
+import com.vizor.unreal.tree.CppStruct;
+import com.vizor.unreal.tree.CppType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.vizor.unreal.tree.CppType.Kind.Primitive;
+import static com.vizor.unreal.tree.CppType.Kind.Struct;
+import static com.vizor.unreal.tree.CppType.plain;
+import static com.vizor.unreal.tree.CppType.wildcardGeneric;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Ordering of structures, so each structure is declared after all structures it contains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageOrderResolverBenchmark
+{
+    @Param({"20", "500"})
+    public int numStructs;
+
+    private final MessageOrderResolver resolver = new MessageOrderResolver();
+    private final List<CppStruct> structs = new ArrayList<>();
+
+    @Setup
+    public void setUp()
+    {
+        final CppType array = wildcardGeneric("TArray", Struct, 1);
+        final List<CppType> types = new ArrayList<>(numStructs);
+
+        for (int i = 0; i < numStructs; i++)
+            types.add(plain("FBench_M" + i, Struct));
+
+        // Declared in reverse order, so each structure has to be moved after the ones it contains
+        for (int i = numStructs - 1; i >= 0; i--)
+        {
+            final List<CppField> fields = new ArrayList<>(asList(
+                new CppField(plain("int32", Primitive), "Id"),
+                new CppField(plain("FString", Struct), "Name")
+            ));
+
+            if (i > 0)
+            {
+                fields.add(new CppField(types.get(i - 1), "Previous"));
+                fields.add(new CppField(array.makeGeneric(types.get(i / 2)), "Children"));
+            }
+
+            structs.add(new CppStruct(types.get(i), fields));
+        }
+    }
+
+    @Benchmark
+    public int[] sortByInclusion()
+    {
+        return resolver.sortByInclusion(structs);
+    }
+}
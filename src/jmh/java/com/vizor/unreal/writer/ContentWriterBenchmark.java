@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.writer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Building a generated file line by line, the way printers do, and rendering it into bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentWriterBenchmark
+{
+    @Param({"1000", "20000"})
+    public int numLines;
+
+    @Benchmark
+    public byte[] buildLines()
+    {
+        final ContentWriter writer = new ContentWriter();
+
+        for (int i = 0; i < numLines; i++)
+        {
+            if (i % 10 == 0)
+            {
+                writer.writeLine("USTRUCT(BlueprintType, meta = (DisplayName = \"Bench M" + i + "\"))");
+                writer.writeLine("struct FBench_M" + i);
+                writer.writeLine("{");
+                writer.incTabs();
+            }
+            else if (i % 10 == 9)
+            {
+                writer.decTabs();
+                writer.writeLine("};");
+                writer.newLine();
+            }
+            else
+            {
+                writer.write("UPROPERTY(");
+                writer.write("Category = \"gRPC\", BlueprintReadWrite, Transient");
+                writer.writeLine(")");
+                writer.writeLine("FString Field" + i + ";  ");
+            }
+        }
+
+        return writer.getBytes();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal;
+
+import com.vizor.unreal.config.Config;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.lang.System.getProperty;
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Paths.get;
+import static java.util.Arrays.asList;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Creates an Application Class Data Sharing (AppCDS) archive, which makes the JVM start faster, because classes of
+ * the converter and its dependencies are loaded from a memory-mapped archive instead of being loaded and verified one
+ * by one from jars.
+ *
+ * The archive is produced by a training run: a child JVM converts a small sample schema, bundled into resources, and
+ * dumps all classes it has loaded when it exits. This requires Java 13 or newer. The archive is only valid for the
+ * exact JVM and classpath it was created with, thus should be created on the machine, the converter runs on.
+ */
+final class CdsArchiveBuilder
+{
+    private static final Logger log = getLogger(CdsArchiveBuilder.class);
+
+    private static final int minJavaVersion = 13;
+
+    private static final String sampleRoot = "cds/";
+    private static final String sampleConfig = "config.yml";
+    private static final List<String> sampleProtos = asList(
+        "protos/common/math.proto",
+        "protos/common/meta.proto",
+        "protos/game/player.proto",
+        "protos/game/world.proto"
+    );
+
+    private CdsArchiveBuilder()
+    {
+    }
+
+    /**
+     * Runs the training run and writes the archive.
+     *
+     * @param archivePath Where the archive should be written to.
+     * @return Exit code of the training run, zero on success.
+     */
+    static int build(final Path archivePath)
+    {
+        final int javaVersion = getJavaVersion();
+        if (javaVersion < minJavaVersion)
+        {
+            log.error("Creating a CDS archive requires Java {} or newer, but Java {} is used", minJavaVersion, javaVersion);
+            return 1;
+        }
+
+        Path workDir = null;
+        try
+        {
+            workDir = createTempDirectory("cornerstone-cds");
+            extractSample(workDir);
+
+            final Path absoluteArchivePath = archivePath.toAbsolutePath();
+            deleteIfExists(absoluteArchivePath);
+
+            final Path javaExecutable = get(getProperty("java.home"), "bin", "java");
+            final ProcessBuilder builder = new ProcessBuilder(
+                javaExecutable.toString(),
+                "-XX:ArchiveClassesAtExit=" + absoluteArchivePath,
+                "-Xlog:cds=error",
+                "-D" + Config.configPathProperty + "=" + workDir.resolve(sampleConfig),
+                "-cp", getProperty("java.class.path"),
+                Main.class.getName()
+            );
+
+            builder.directory(workDir.toFile()).inheritIO();
+
+            log.info("Running a training run to create a CDS archive: {}", builder.command());
+            final int exitCode = builder.start().waitFor();
+
+            if (exitCode != 0 || !isRegularFile(absoluteArchivePath))
+            {
+                log.error("Training run has failed with exit code {}", exitCode);
+                return (exitCode != 0) ? exitCode : 1;
+            }
+
+            log.info("CDS archive has been written to '{}'. Pass '-XX:SharedArchiveFile={}' to the JVM (the launcher " +
+                    "scripts do it automatically) to use it", absoluteArchivePath, absoluteArchivePath);
+            return 0;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the training run", e);
+        }
+        finally
+        {
+            if (nonNull(workDir))
+                deleteRecursively(workDir);
+        }
+    }
+
+    private static void extractSample(final Path workDir) throws IOException
+    {
+        final ClassLoader cl = CdsArchiveBuilder.class.getClassLoader();
+
+        final List<String> resources = new ArrayList<>(sampleProtos);
+        resources.add(sampleConfig);
+
+        for (final String resource : resources)
+        {
+            final Path target = workDir.resolve(resource);
+            createDirectories(target.getParent());
+
+            try (final InputStream is = cl.getResourceAsStream(sampleRoot + resource))
+            {
+                if (isNull(is))
+                    throw new RuntimeException("Unable to find a sample resource: " + sampleRoot + resource);
+
+                copy(is, target);
+            }
+        }
+    }
+
+    private static void deleteRecursively(final Path folder)
+    {
+        try (final Stream<Path> paths = walk(folder))
+        {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to delete '{}': {}", folder, e.toString());
+        }
+    }
+
+    private static int getJavaVersion()
+    {
+        // Either '1.8' for Java 8 and below, or '9', '10', etc. for newer ones
+        final String version = getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+}
@@ -17,22 +17,28 @@ package com.vizor.unreal;
 
 import com.vizor.unreal.config.Config;
 import com.vizor.unreal.config.DestinationConfig;
+import com.vizor.unreal.convert.ConversionProfile;
 import com.vizor.unreal.convert.Converter;
+import com.vizor.unreal.daemon.GeneratorClient;
+import com.vizor.unreal.daemon.GeneratorDaemon;
 import com.vizor.unreal.util.CliHandler;
 import com.vizor.unreal.util.CliHandler.Parse;
-import com.vizor.unreal.util.Tuple;
+import com.vizor.unreal.util.SourceWatcher;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
 
 import java.nio.file.Path;
-import java.util.List;
+import java.util.Set;
 
-import static com.vizor.unreal.util.Misc.findFilesRecursively;
+import static com.vizor.unreal.config.Config.defaultDaemonPort;
 import static com.vizor.unreal.util.Misc.stringIsNullOrEmpty;
 import static java.lang.Math.round;
 import static java.lang.Runtime.getRuntime;
+import static java.lang.System.exit;
 import static java.lang.System.nanoTime;
+import static java.nio.file.Files.isRegularFile;
 import static java.nio.file.Paths.get;
+import static java.util.Objects.nonNull;
 import static org.apache.logging.log4j.LogManager.getLogger;
 import static org.apache.logging.log4j.core.config.Configurator.setLevel;
 
@@ -40,16 +46,41 @@ import static org.apache.logging.log4j.core.config.Configurator.setLevel;
 
 public class Main
 {
-    private static final Logger log = getLogger(Main.class);
+    /** Initialized by {@link #launch(Parse)}, so '--connect' clients never initialize logging */
+    private static Logger log;
+
+    /** How long proto files should stay unchanged in watch mode, before they're converted */
+    private static final long watchQuietPeriodMillis = 100;
 
     public static void main(final String[] args)
     {
-        launch(args);
+        final Parse cliParse = new CliHandler(args).getParse();
+
+        // Clients only forward their arguments, so they don't pay for loading the config and initializing logging
+        if (cliParse.isConnect())
+        {
+            final Integer port = cliParse.getDaemonPort();
+            final Integer exitCode = GeneratorClient.forward(nonNull(port) ? port : defaultDaemonPort, args);
+
+            if (nonNull(exitCode))
+            {
+                if (exitCode != 0)
+                    exit(exitCode);
+
+                return;
+            }
+        }
+
+        launch(cliParse);
     }
 
-    private static void launch(String[] args)
+    private static void launch(final Parse cliParse)
     {
-        final Parse cliParse = new CliHandler(args).getParse();
+        log = getLogger(Main.class);
+
+        // Doesn't need a config, the training run uses its own one
+        if (nonNull(cliParse.getCreateCds()))
+            exit(CdsArchiveBuilder.build(get(cliParse.getCreateCds())));
 
         // Will be ran after jvm was exited
         getRuntime().addShutdownHook(new Thread(() -> log.info("Shutting javaVM down...")));
@@ -73,22 +104,23 @@ public class Main
             log.debug("Globally changed {} log level from {} to {}", packageName, previousLevel.name(), logLevel.name());
         }
 
-        final Path srcPath = get(config.getSrcPath());
-        final DestinationConfig dstPath = config.getDstPath();
-
-        final Converter converter = new Converter(config.getModuleName());
+        if (cliParse.isDaemon())
+        {
+            try (final GeneratorDaemon daemon = new GeneratorDaemon(config))
+            {
+                daemon.serve();
+            }
+            return;
+        }
 
-        if (!srcPath.toFile().isDirectory())
-            if(!srcPath.toFile().mkdirs())
-                throw new IllegalArgumentException("Source folder '" + srcPath + "' does not exist, or isn't a directory");
+        if (cliParse.isConnect())
+            log.warn("Converting in-process instead");
 
-        if (!dstPath.pathPublic.toFile().isDirectory())
-            if(!dstPath.pathPublic.toFile().mkdirs())
-                throw new IllegalArgumentException("Destination Public folder '" + dstPath.pathPublic + "' does not exist, or isn't a directory");
+        final Path srcPath = get(config.getSrcPath());
+        final DestinationConfig dstPath = config.getDstPath();
 
-        if (!dstPath.pathPrivate.toFile().isDirectory())
-            if(!dstPath.pathPrivate.toFile().mkdirs())
-                throw new IllegalArgumentException("Destination Private folder '" + dstPath.pathPrivate + "' does not exist, or isn't a directory");
+        final Converter converter = new Converter(config, cliParse.isWatch());
+        converter.prepareDirectories();
 
         log.info("Running cornerstone...");
         log.info("Logging level: {}", log.getLevel().toString());
@@ -118,20 +150,88 @@ public class Main
         }
         
 
-        launchSingle(srcPath, dstPath, converter);
+        final Path profilePath = nonNull(cliParse.getProfile()) ? get(cliParse.getProfile()) : null;
+
+        if (cliParse.isWatch())
+        {
+            launchWatch(srcPath, converter, profilePath);
+        }
+        else
+        {
+            launchSingle(converter, profilePath);
+            log.info("Shutting converter down...");
+        }
+    }
+
+    private static void launchWatch(final Path srcPath, final Converter converter, final Path profilePath)
+    {
+        try (final SourceWatcher watcher = new SourceWatcher(srcPath, watchQuietPeriodMillis))
+        {
+            launchWatched(converter, profilePath);
+
+            while (true)
+            {
+                log.info("Watching '{}' for changes, press Ctrl+C to stop...", srcPath);
+
+                final Set<Path> changes = watcher.awaitChanges();
+                if (changes.stream().noneMatch(Main::mayAffectProtos))
+                {
+                    log.debug("Ignoring changes of {}", changes);
+                    continue;
+                }
+
+                log.info("Detected changes of {}", changes);
+                launchWatched(converter, profilePath);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private static void launchSingle(final Path srcPath, final DestinationConfig dstPath, final Converter converter)
+    private static void launchWatched(final Converter converter, final Path profilePath)
     {
-        final long start = nanoTime();
+        // A broken proto file shouldn't stop watching, it is likely to be fixed soon
+        try
+        {
+            launchSingle(converter, profilePath);
+        }
+        catch (RuntimeException e)
+        {
+            log.error("Conversion failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private static boolean mayAffectProtos(final Path changed)
+    {
+        // Deleted files and folders can't be examined, so consider them affecting
+        return !isRegularFile(changed) || changed.getFileName().toString().toLowerCase().endsWith(".proto");
+    }
 
-        final List<Tuple<Path, DestinationConfig>> paths = findFilesRecursively(srcPath, dstPath, "proto");
+    private static void launchSingle(final Converter converter, final Path profilePath)
+    {
+        final long start = nanoTime();
 
-        // Display how many proto file(s) pending processed
-        log.info("Running converter, {} proto-files pending processed.", paths.size());
-        converter.convert(srcPath, paths);
+        if (nonNull(profilePath))
+        {
+            // A profile of a failed run is still useful to find out where it got stuck
+            final ConversionProfile profile = new ConversionProfile();
+            try
+            {
+                converter.convert(profile);
+            }
+            finally
+            {
+                profile.report(profilePath);
+            }
+        }
+        else
+        {
+            converter.convert();
+        }
 
         final float elapsed = (float) round((double) (nanoTime() - start) / 1000000.0) / 1000.0f;
-        log.info("All done in {} seconds. Shutting converter down...", elapsed);
+        log.info("All done in {} seconds.", elapsed);
     }
 }
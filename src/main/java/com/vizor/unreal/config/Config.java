@@ -17,6 +17,7 @@ package com.vizor.unreal.config;
 
 import com.vizor.unreal.util.CliHandler.Parse;
 import com.vizor.unreal.util.Misc;
+import com.vizor.unreal.util.Shard;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
 import org.yaml.snakeyaml.DumperOptions;
@@ -28,17 +29,20 @@ import org.yaml.snakeyaml.introspector.PropertyUtils;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.lang.reflect.Field;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 
 import static com.vizor.unreal.util.Misc.snakeCaseToCamelCase;
 import static com.vizor.unreal.util.Misc.stringIsNullOrEmpty;
@@ -51,6 +55,7 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static org.apache.logging.log4j.LogManager.getLogger;
@@ -62,23 +67,48 @@ public final class Config
 {
     @Target(ElementType.FIELD)
     @Retention(RetentionPolicy.RUNTIME)
-    private @interface ConfigField {}
+    private @interface ConfigField
+    {
+        /**
+         * Whether the option has any effect on the generated code. Options, which only change the way the
+         * converter runs (logging, threading, etc.) should set it to false, so they're not taken into account
+         * when deciding whether the previously generated code is still up to date.
+         */
+        boolean affectsOutput() default true;
+
+        /**
+         * Whether the option only tells where files are, rather than what the generated code looks like. Such
+         * options are fingerprinted as absolute, normalized paths, since the same location might be given in different
+         * forms. They differ between checkouts (and machines), so they're not taken into account when deciding
+         * whether the generated code might be shared between them.
+         */
+        boolean location() default false;
+    }
 
     private static final Logger log = getLogger(Config.class);
     private static final String configFileName = "config.yml";
 
+    /** A system property, which may point to a config file to be used instead of the default one */
+    public static final String configPathProperty = "cornerstone.config";
+
+    /**
+     * A port the daemon listens on, unless configured otherwise. It is a compile-time constant, so '--connect' clients
+     * use it without loading the config.
+     */
+    public static final int defaultDaemonPort = 47321;
+
     private static Config config = null;
 
-    @ConfigField
+    @ConfigField(location = true)
     private String srcPath;
     
     @ConfigField
     private String includePath;
 
-    @ConfigField
+    @ConfigField(location = true)
     private String dstPublicPath;
 
-    @ConfigField
+    @ConfigField(location = true)
     private String dstPrivatePath;
 
     @ConfigField
@@ -93,15 +123,36 @@ public final class Config
     @ConfigField
     private String companyName;
 
-    @ConfigField
+    @ConfigField(affectsOutput = false)
     private String logLevel;
     
     @ConfigField
     private boolean isServer;
 
-    @ConfigField
+    @ConfigField(affectsOutput = false)
     private boolean noFork;
 
+    @ConfigField(affectsOutput = false)
+    private boolean incremental;
+
+    @ConfigField(affectsOutput = false)
+    private int jobs;
+
+    @ConfigField(affectsOutput = false)
+    private boolean syncOutputs;
+
+    @ConfigField(affectsOutput = false)
+    private boolean streaming;
+
+    @ConfigField(affectsOutput = false)
+    private String shard;
+
+    @ConfigField(affectsOutput = false)
+    private String cacheDir;
+
+    @ConfigField(affectsOutput = false)
+    private int daemonPort = defaultDaemonPort;
+
 
     public final String getSrcPath()
     {
@@ -213,7 +264,103 @@ public final class Config
         this.noFork = noFork;
     }
 
+    public int getJobs()
+    {
+        return jobs;
+    }
+
+    public void setJobs(int jobs)
+    {
+        this.jobs = jobs;
+    }
+
+    /**
+     * Computes the number of threads, the converter should use. 'no_fork' forces a single thread, while
+     * a non-positive number of jobs means 'use all available cores'.
+     *
+     * @return The number of threads to convert with, always positive.
+     */
+    public final int getEffectiveJobs()
+    {
+        if (noFork)
+            return 1;
+
+        return (jobs > 0) ? jobs : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getDaemonPort()
+    {
+        return daemonPort;
+    }
+
+    public void setDaemonPort(int daemonPort)
+    {
+        this.daemonPort = daemonPort;
+    }
+
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
+    public boolean isSyncOutputs()
+    {
+        return syncOutputs;
+    }
+
+    public void setSyncOutputs(boolean syncOutputs)
+    {
+        this.syncOutputs = syncOutputs;
+    }
+
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    public String getShard()
+    {
+        return shard;
+    }
+
+    public void setShard(String shard)
+    {
+        this.shard = shard;
+    }
+
+    /**
+     * Parses the 'shard' option. The getter itself returns the raw option, since the config is loaded as a bean, and
+     * its getter has to match the setter.
+     *
+     * @return A shard of proto files to be converted, or the whole set if sharding isn't used.
+     */
+    public final Shard getEffectiveShard()
+    {
+        return Shard.parse(shard);
+    }
+
+    public String getCacheDir()
+    {
+        return cacheDir;
+    }
+
+    public void setCacheDir(String cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
     /**
+     * If the 'cornerstone.config' system property is set -> loads the config from the file it points to.
      * If we're not in jar -> loads the config ONLY from the 'resources' directory.
      * If we're in jar -> try to load config from the file near the jar.
      *
@@ -221,6 +368,21 @@ public final class Config
      */
     private static InputStream getConfigStream()
     {
+        final String explicitConfig = System.getProperty(configPathProperty);
+        if (nonNull(explicitConfig))
+        {
+            try
+            {
+                log.info("Explicit config is used: {}", explicitConfig);
+                return new FileInputStream(explicitConfig);
+            }
+            catch (FileNotFoundException e)
+            {
+                throw new RuntimeException("Unable to open the config, set with '" + configPathProperty + "': " +
+                        explicitConfig, e);
+            }
+        }
+
         String pathToJar = Config.class.getProtectionDomain().getCodeSource().getLocation().getPath();
 
         // Cut first slash - need on Windows
@@ -271,20 +433,85 @@ public final class Config
     public static Config get()
     {
         if (isNull(config))
+            config = load(getConfigStream());
+
+        return config;
+    }
+
+    /**
+     * Loads a config from the given file. Unlike {@link #get()}, neither looks the config up, nor keeps it.
+     *
+     * @param path Path to the config file.
+     * @return A new config.
+     */
+    public static Config load(final Path path)
+    {
+        try (final InputStream in = new FileInputStream(path.toFile()))
         {
-            final Constructor constructor = new Constructor(Config.class);
-            constructor.setPropertyUtils(new PropertyUtils(){
-                @Override
-                public Property getProperty(Class<?> type, String name)
-                {
-                    return super.getProperty(type, snakeCaseToCamelCase(name, false));
-                }
-            });
+            return load(in);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unable to load the config '" + path + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static Config load(final InputStream in)
+    {
+        final Constructor constructor = new Constructor(Config.class);
+        constructor.setPropertyUtils(new PropertyUtils(){
+            @Override
+            public Property getProperty(Class<?> type, String name)
+            {
+                return super.getProperty(type, snakeCaseToCamelCase(name, false));
+            }
+        });
+
+        return new Yaml(constructor).loadAs(in, Config.class);
+    }
+
+    /**
+     * Creates an independent copy of this config, which can be patched (e.g. with options of a single daemon request)
+     * without affecting the original one.
+     *
+     * @return A copy of the config.
+     */
+    public final Config copy()
+    {
+        final Config copy = new Config();
+
+        for (final Field field : getClass().getDeclaredFields())
+        {
+            if (!field.isAnnotationPresent(ConfigField.class))
+                continue;
 
-            config = new Yaml(constructor).loadAs(getConfigStream(), Config.class);
+            try
+            {
+                field.set(copy, field.get(this));
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
         }
 
-        return config;
+        return copy;
+    }
+
+    /**
+     * Makes relative source and destination paths absolute, resolving them against the given folder instead of the
+     * working directory of the process.
+     *
+     * @param baseDir A folder to resolve relative paths against.
+     */
+    public final void resolvePaths(final Path baseDir)
+    {
+        srcPath = baseDir.resolve(srcPath).normalize().toString();
+        dstPublicPath = baseDir.resolve(dstPublicPath).normalize().toString();
+        dstPrivatePath = baseDir.resolve(dstPrivatePath).normalize().toString();
+
+        if (!stringIsNullOrEmpty(cacheDir))
+            cacheDir = baseDir.resolve(cacheDir).normalize().toString();
     }
 
     @Override
@@ -296,6 +523,83 @@ public final class Config
         return new Yaml(options).dump(this);
     }
 
+    /**
+     * Computes a textual fingerprint of all options, affecting the generated code. Two configs having equal
+     * fingerprints produce exactly the same code from the same proto files.
+     *
+     * @return 'name=value' pairs of all output-affecting options, sorted by option name.
+     */
+    public final String getOutputFingerprint()
+    {
+        return getFingerprint(true, true);
+    }
+
+    /**
+     * Computes a textual fingerprint of all options, affecting the generated code, except for locations of source
+     * and destination folders. Two configs having equal fingerprints produce exactly the same code from the same
+     * proto files, even if the files reside in different folders (or on different machines).
+     *
+     * @return 'name=value' pairs of all output-affecting options, except for locations, sorted by option name.
+     */
+    public final String getContentFingerprint()
+    {
+        return getFingerprint(true, false);
+    }
+
+    /**
+     * Computes a textual fingerprint of all options. Two configs having equal fingerprints are interchangeable.
+     *
+     * @return 'name=value' pairs of all options, sorted by option name.
+     */
+    public final String getFingerprint()
+    {
+        return getFingerprint(false, true);
+    }
+
+    private String getFingerprint(final boolean outputOnly, final boolean withLocations)
+    {
+        final Map<String, String> values = new TreeMap<>();
+
+        for (final Field field : getClass().getDeclaredFields())
+        {
+            final ConfigField configField = field.getAnnotation(ConfigField.class);
+            if (isNull(configField) || (outputOnly && !configField.affectsOutput()) ||
+                    (!withLocations && configField.location()))
+                continue;
+
+            try
+            {
+                final Object value = field.get(this);
+                values.put(field.getName(), configField.location() ? getCanonicalLocation(value) : valueOf(value));
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return values.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(joining("\n"));
+    }
+
+    /**
+     * Locations are compared in their absolute and normalized form, so the same config yields the same fingerprint,
+     * whether its paths have been resolved (see {@link #resolvePaths(Path)}) or are relative to the working directory.
+     */
+    private static String getCanonicalLocation(final Object location)
+    {
+        if (!(location instanceof String) || stringIsNullOrEmpty((String) location))
+            return valueOf(location);
+
+        try
+        {
+            return Paths.get((String) location).toAbsolutePath().normalize().toString();
+        }
+        catch (InvalidPathException e)
+        {
+            return valueOf(location);
+        }
+    }
+
     public final boolean isLogLevelNotDefault()
     {
         return !stringIsNullOrEmpty(logLevel);
@@ -343,6 +647,15 @@ public final class Config
                 throw new RuntimeException("company_name, which is '" + companyName + "' mustn't contain '|'");
         }
 
+        if (jobs < 0)
+            throw new RuntimeException("jobs, which is " + jobs + " mustn't be negative");
+
+        // Throws if malformed
+        Shard.parse(shard);
+
+        if (daemonPort < 1 || daemonPort > 65535)
+            throw new RuntimeException("daemon_port, which is " + daemonPort + " must be within [1, 65535]");
+
         if (!stringIsNullOrEmpty(logLevel))
         {
             final List<String> availableOptions = Misc.getLowercaseLog4jLevels();
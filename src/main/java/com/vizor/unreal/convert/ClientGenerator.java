@@ -51,9 +51,10 @@ public class ClientGenerator extends CodeGenerator
     // Bulk cache
     private final List<Tuple<CppDelegate, CppField>> delegates;
 
-    ClientGenerator(final ServiceElement service, final TypesProvider provider, final CppType workerType) 
+    ClientGenerator(final ServiceElement service, final TypesProvider provider, final CppType workerType,
+                    final Config config) 
     {
-    	super(service, provider, workerType);
+    	super(service, provider, workerType, config);
     	
         delegates = genDelegates();
         conduits = genConduits(reqWithCtx, rspWithSts);
@@ -51,9 +51,9 @@ public abstract class CodeGenerator
     public static final CppArgument contextArg = new CppArgument(plain("FGrpcClientContext", Struct).makeRef(), "Context");
     
     // Frequently used string literals:
-	protected static final String companyName = Config.get().getCompanyName();
-	protected static final String rpcRequestsCategory = companyName + "|RPC Requests|";
-    protected static final String rpcResponsesCategory = companyName + "|RPC Responses|";
+	protected final String companyName;
+	protected final String rpcRequestsCategory;
+    protected final String rpcResponsesCategory;
     protected static final String eventPrefix = "Event";
     protected static final String eventTypePrefix = "F" + eventPrefix;
     
@@ -70,8 +70,13 @@ public abstract class CodeGenerator
 	protected final TypesProvider provider;
 	
 	
-	CodeGenerator(final ServiceElement service, final TypesProvider provider, final CppType workerType)
+	CodeGenerator(final ServiceElement service, final TypesProvider provider, final CppType workerType,
+                  final Config config)
     {
+		 this.companyName = config.getCompanyName();
+		 this.rpcRequestsCategory = companyName + "|RPC Requests|";
+		 this.rpcResponsesCategory = companyName + "|RPC Responses|";
+
 		 this.dispatcherType = plain("U" + service.name() + getClassName(), Class);
 		 this.parentType = plain("U"+ getClassName(), Class);
 		 this.workerType = workerType;
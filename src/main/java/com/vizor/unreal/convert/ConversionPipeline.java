@@ -0,0 +1,531 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.config.DestinationConfig;
+import com.vizor.unreal.util.Tuple;
+import com.vizor.unreal.writer.GeneratedFile;
+import com.vizor.unreal.writer.OutputSink;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import static java.nio.file.Paths.get;
+import static java.util.Collections.emptyList;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Converts proto files in four stages, connected by bounded queues:
+ * <ol>
+ *     <li>parse - proto files are read, parsed and preprocessed by the scheduler's threads;</li>
+ *     <li>resolve - as soon as a proto file and all files it imports are parsed, its types are registered and its
+ *         imports are resolved. Done by the calling thread, which coordinates all other stages;</li>
+ *     <li>generate - resolved proto files are converted to C++ code by the scheduler's threads (or taken from the
+ *         {@link GenerationCache});</li>
+ *     <li>write - generated files are written by the {@link WriteStage}'s own I/O threads.</li>
+ * </ol>
+ *
+ * Thus generation of the first proto files overlaps parsing of the next ones, and disk writes overlap both. Only a
+ * limited number of proto files is being parsed or generated at once, and generating threads block while the writer
+ * falls behind, so the amount of generated content, kept in memory, doesn't depend on the number of proto files.
+ *
+ * Resolved proto files are converted in the order of their estimated cost (see {@link GenerationCost}), the most
+ * expensive first, so a few huge files don't become stragglers at the end of the run. Parsing stays ahead of
+ * generation for a while, so there are some files to choose from.
+ *
+ * In streaming mode (see {@link Config#isStreaming()}) parse trees are released as soon as proto files are converted,
+ * or are known not to be converted at all, so only names of types and imports of every file are kept till the end of
+ * the run. Parsing doesn't run that far ahead of generation then, so peak memory barely depends on the number of
+ * proto files.
+ *
+ * A broken proto file doesn't stop others from being parsed, so all broken files are reported at once, but nothing
+ * else is sent to the generate stage after the first failure.
+ *
+ * The pipeline may convert only a part of proto files (e.g. a shard). Files, imported by that part, are parsed and
+ * resolved as well, so their types are known, but aren't converted.
+ */
+final class ConversionPipeline
+{
+    private static final Logger log = getLogger(ConversionPipeline.class);
+
+    /** How many tasks of a stage may be in flight per scheduler's thread */
+    private static final int tasksPerThread = 2;
+
+    /** How many resolved proto files may wait for being converted per scheduler's thread */
+    private static final int readyPerThread = 16;
+
+    /** How many generated files may wait for being written per generation task in flight */
+    private static final int filesPerTask = 4;
+
+    /** Writing is bound by the file system rather than CPU, a couple of threads keep it busy enough */
+    private static final int numWriters = 2;
+
+    interface Parser
+    {
+        List<ProtoProcessorArgs> parse(Path pathToProto, DestinationConfig pathToConverted);
+    }
+
+    private final Config config;
+    private final OutputSink sink;
+    private final GenerationScheduler scheduler;
+    private final GenerationManifest manifest;
+    private final GenerationCache cache;
+    private final ConversionProfile profile;
+    private final Parser parser;
+
+    private final int maxParsing;
+    private final int maxGenerating;
+    private final int maxReady;
+    private final boolean streaming;
+
+    /** Completions of parse and generate tasks, the coordinator reacts on */
+    private final BlockingQueue<Runnable> events;
+
+    /**
+     * @param config Config to convert with.
+     * @param sink A sink to write generated files into.
+     * @param scheduler Scheduler, running the parse and generate tasks.
+     * @param manifest Changes tracking, telling which proto files have to be converted. Null if everything has to.
+     * @param cache A cache of generated files, null if generated files aren't cached.
+     * @param profile A profile to record timings into.
+     * @param parser Parses a single proto file. Called by the scheduler's threads.
+     */
+    ConversionPipeline(final Config config, final OutputSink sink, final GenerationScheduler scheduler,
+                       final GenerationManifest manifest, final GenerationCache cache,
+                       final ConversionProfile profile, final Parser parser)
+    {
+        this.config = requireNonNull(config);
+        this.sink = requireNonNull(sink);
+        this.scheduler = requireNonNull(scheduler);
+        this.manifest = manifest;
+        this.cache = cache;
+        this.profile = requireNonNull(profile);
+        this.parser = requireNonNull(parser);
+
+        this.maxParsing = scheduler.getNumThreads() * tasksPerThread;
+        this.maxGenerating = scheduler.getNumThreads() * tasksPerThread;
+        this.streaming = config.isStreaming();
+
+        // Every resolved proto file keeps its parse tree until it is converted
+        this.maxReady = streaming ? maxGenerating : scheduler.getNumThreads() * readyPerThread;
+
+        // Tasks in flight are limited, so posting an event never blocks
+        this.events = new ArrayBlockingQueue<>(maxParsing + maxGenerating);
+    }
+
+    /**
+     * Runs all stages and waits until all generated files are written.
+     *
+     * @param srcPath Root folder of all proto files.
+     * @param paths Paths to all proto files and their destinations.
+     * @param converted Relative paths of proto files to be converted, null to convert all of them.
+     * @throws RuntimeException if any proto file has failed to be parsed, converted or written.
+     */
+    void run(final Path srcPath, final List<Tuple<Path, DestinationConfig>> paths, final Set<Path> converted)
+    {
+        final List<Path> relativePaths = paths.stream().map(p -> srcPath.relativize(p.first())).collect(toList());
+        final Run run = new Run(paths, relativePaths, converted, new ImportGraph(relativePaths));
+
+        try (final WriteStage writer = new WriteStage(sink, numWriters, maxGenerating * filesPerTask,
+                config.isSyncOutputs(), profile))
+        {
+            run.coordinate(writer);
+            run.rethrowFailures();
+
+            writer.finish();
+        }
+
+        if (nonNull(manifest))
+        {
+            log.info("{} of {} proto-files are up to date, {} converted", run.numResolved - run.numConverted,
+                    run.numResolved, run.numConverted);
+        }
+    }
+
+    /**
+     * State of a single run. Only accessed by the coordinating thread.
+     */
+    private final class Run
+    {
+        private final Map<Path, Tuple<Path, DestinationConfig>> pathsByRelative = new HashMap<>();
+        private final Set<Path> converted;
+        private final ImportGraph importGraph;
+        private final SchemaSymbols symbols = new SchemaSymbols();
+
+        /** Proto files to be parsed, and relative paths of all files, which have ever been queued */
+        private final Deque<Tuple<Path, DestinationConfig>> toParse = new ArrayDeque<>();
+        private final Set<Path> queued = new HashSet<>();
+
+        private int numParsing = 0;
+        private int numGenerating = 0;
+
+        private int numResolved = 0;
+        private int numConverted = 0;
+
+        /** Proto files, ready to be converted, the most expensive first */
+        private final Queue<Ready> ready = new PriorityQueue<>();
+
+        /** Relative paths of proto files, which have been resolved */
+        private final Set<Path> resolved = new HashSet<>();
+
+        /** Parsed proto files, waiting for the files they import, by the imported paths */
+        private final Map<Path, List<ParsedFile>> waiting = new HashMap<>();
+        private final Set<ParsedFile> unresolved = new LinkedHashSet<>();
+
+        /** Sorted by path, to report failures the same order on every run */
+        private final Map<Path, Throwable> parseFailures = new TreeMap<>();
+        private RuntimeException generateFailure = null;
+
+        private Run(final List<Tuple<Path, DestinationConfig>> paths, final List<Path> relativePaths,
+                    final Set<Path> converted, final ImportGraph importGraph)
+        {
+            this.converted = converted;
+            this.importGraph = importGraph;
+
+            for (int i = 0; i < paths.size(); i++)
+            {
+                final Path relativePath = relativePaths.get(i);
+                pathsByRelative.put(relativePath, paths.get(i));
+
+                // Other files are only parsed once something imports them
+                if (isConverted(relativePath) && queued.add(relativePath))
+                    toParse.add(paths.get(i));
+            }
+        }
+
+        private boolean isConverted(final Path relativePath)
+        {
+            return isNull(converted) || converted.contains(relativePath);
+        }
+
+        private void coordinate(final WriteStage writer)
+        {
+            while (true)
+            {
+                while (canGenerate() && !ready.isEmpty() && numGenerating < maxGenerating)
+                    generate(ready.poll().arg, writer);
+
+                // Don't parse too far ahead if generation can't keep up
+                while (!toParse.isEmpty() && numParsing < maxParsing && isNull(generateFailure) &&
+                        (ready.size() < maxReady || !canGenerate()))
+                    parse(toParse.poll());
+
+                if (numParsing == 0 && numGenerating == 0)
+                {
+                    final boolean allParsed = toParse.isEmpty() || nonNull(generateFailure);
+                    if (allParsed && (ready.isEmpty() || !canGenerate()))
+                        return;
+                }
+
+                try
+                {
+                    events.take().run();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for conversion tasks", e);
+                }
+            }
+        }
+
+        private boolean canGenerate()
+        {
+            return parseFailures.isEmpty() && isNull(generateFailure);
+        }
+
+        private void parse(final Tuple<Path, DestinationConfig> pathPair)
+        {
+            numParsing++;
+
+            scheduler.execute(() -> {
+                try
+                {
+                    final List<ProtoProcessorArgs> args = parser.parse(pathPair.first(), pathPair.second());
+                    post(() -> onParsed(args));
+                }
+                catch (Throwable t)
+                {
+                    post(() -> onParseFailed(pathPair.first(), t));
+                }
+            });
+        }
+
+        private void onParsed(final List<ProtoProcessorArgs> args)
+        {
+            numParsing--;
+
+            if (args.isEmpty())
+                return;
+
+            final ParsedFile file = new ParsedFile(args);
+            for (final ProtoProcessorArgs arg : args)
+            {
+                for (final String importPath : arg.parse.imports())
+                {
+                    final Path path = get(importPath);
+
+                    // Files, which aren't a part of the source folder, are neither resolved, nor waited for
+                    if (!importGraph.isKnown(path))
+                        continue;
+
+                    if (queued.add(path))
+                        toParse.add(pathsByRelative.get(path));
+
+                    if (!resolved.contains(path) && file.pendingImports.add(path))
+                        waiting.computeIfAbsent(path, p -> new ArrayList<>()).add(file);
+                }
+            }
+
+            if (file.pendingImports.isEmpty())
+                resolve(file);
+            else
+                unresolved.add(file);
+        }
+
+        private void onParseFailed(final Path pathToProto, final Throwable t)
+        {
+            numParsing--;
+            parseFailures.put(pathToProto, t);
+        }
+
+        private void resolve(final ParsedFile first)
+        {
+            final Deque<ParsedFile> toResolve = new ArrayDeque<>();
+            toResolve.add(first);
+
+            while (!toResolve.isEmpty())
+            {
+                final ParsedFile file = toResolve.poll();
+                unresolved.remove(file);
+
+                for (final ProtoProcessorArgs arg : file.args)
+                {
+                    final ConversionProfile.Sample start = profile.start();
+
+                    // Types must be registered before any scope, including them, is created
+                    symbols.register(arg);
+                    importGraph.add(arg);
+
+                    // Files, which are only imported, are neither converted, nor tracked
+                    if (!isConverted(arg.pathToProto))
+                    {
+                        release(arg);
+                        profile.record(start, "resolve", arg.pathToProto);
+                        continue;
+                    }
+
+                    numResolved++;
+
+                    final List<ProtoProcessorArgs> closure = importGraph.getClosure(arg);
+                    if (isNull(manifest) || manifest.record(arg, closure))
+                    {
+                        final long cost = GenerationCost.estimate(arg, closure.size());
+
+                        ready.add(new Ready(arg, cost, numResolved));
+                        profile.count("estimatedCost", arg.pathToProto, cost);
+                        profile.count("protosConverted", null, 1);
+                    }
+                    else
+                    {
+                        release(arg);
+                        profile.count("protosUpToDate", null, 1);
+                    }
+
+                    profile.record(start, "resolve", arg.pathToProto);
+                }
+
+                resolved.add(file.path);
+
+                // Files, waiting for this one, might be resolved now
+                for (final ParsedFile waiter : waiting.getOrDefault(file.path, emptyList()))
+                {
+                    waiter.pendingImports.remove(file.path);
+                    if (waiter.pendingImports.isEmpty())
+                        toResolve.add(waiter);
+                }
+
+                waiting.remove(file.path);
+            }
+        }
+
+        private void generate(final ProtoProcessorArgs arg, final WriteStage writer)
+        {
+            numGenerating++;
+            numConverted++;
+
+            scheduler.execute(() -> {
+                try
+                {
+                    final Consumer<GeneratedFile> output = file -> writer.accept(file, arg.pathToProto);
+
+                    if (isNull(cache))
+                        convert(arg, output);
+                    else
+                        convertCached(arg, output);
+
+                    post(() -> onGenerated(arg));
+                }
+                catch (Throwable t)
+                {
+                    final RuntimeException e = new RuntimeException("Failed to process " + arg + ": " +
+                            t.getMessage(), t);
+
+                    post(() -> onGenerateFailed(e));
+                }
+            });
+        }
+
+        private void convert(final ProtoProcessorArgs arg, final Consumer<GeneratedFile> output)
+        {
+            log.info("Converting {}", arg.pathToProto);
+            new ProtoProcessor(arg, importGraph, symbols, config, profile, output).run();
+        }
+
+        private void convertCached(final ProtoProcessorArgs arg, final Consumer<GeneratedFile> output)
+        {
+            ConversionProfile.Sample start = profile.start();
+
+            final String key = cache.getKey(arg, importGraph.getClosure(arg));
+            final List<GeneratedFile> cached = cache.load(key, arg);
+
+            profile.record(start, "cache", arg.pathToProto);
+
+            if (nonNull(cached))
+            {
+                log.info("Taking {} from the generation cache", arg.pathToProto);
+                profile.count("generationCacheHits", null, 1);
+
+                cached.forEach(output);
+                return;
+            }
+
+            profile.count("generationCacheMisses", null, 1);
+
+            final List<GeneratedFile> generated = new ArrayList<>();
+            convert(arg, output.andThen(generated::add));
+
+            start = profile.start();
+            cache.store(key, generated);
+            profile.record(start, "cache", arg.pathToProto);
+        }
+
+        private void onGenerated(final ProtoProcessorArgs arg)
+        {
+            numGenerating--;
+            release(arg);
+        }
+
+        private void release(final ProtoProcessorArgs arg)
+        {
+            // Nothing but the generate stage uses parse trees of resolved files
+            if (streaming)
+                arg.release();
+        }
+
+        private void onGenerateFailed(final RuntimeException e)
+        {
+            numGenerating--;
+
+            if (isNull(generateFailure))
+                generateFailure = e;
+        }
+
+        private void post(final Runnable event)
+        {
+            // Every task in flight posts a single event, so there is always some room left
+            if (!events.offer(event))
+                throw new IllegalStateException("Conversion events queue overflow");
+        }
+
+        private void rethrowFailures()
+        {
+            if (!parseFailures.isEmpty())
+            {
+                parseFailures.forEach((path, t) -> log.error("Unable to parse '{}': {}", path, t.toString(), t));
+                throw new RuntimeException("Unable to parse " + parseFailures.size() + " proto-file(s): " +
+                        parseFailures.keySet());
+            }
+
+            if (nonNull(generateFailure))
+                throw generateFailure;
+
+            // Every file, which has been parsed, but never resolved, waits for another such file
+            if (!unresolved.isEmpty())
+            {
+                throw new RuntimeException("Proto files can't import each other: " + unresolved.stream()
+                    .map(f -> f.path)
+                    .sorted()
+                    .collect(toList()));
+            }
+        }
+    }
+
+    private static final class Ready implements Comparable<Ready>
+    {
+        private final ProtoProcessorArgs arg;
+        private final long cost;
+        private final int sequence;
+
+        private Ready(final ProtoProcessorArgs arg, final long cost, final int sequence)
+        {
+            this.arg = arg;
+            this.cost = cost;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Ready other)
+        {
+            // Equally expensive files are converted in the order they were resolved
+            final int byCost = Long.compare(other.cost, cost);
+            return (byCost != 0) ? byCost : Integer.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class ParsedFile
+    {
+        private final Path path;
+        private final List<ProtoProcessorArgs> args;
+        private final Set<Path> pendingImports = new HashSet<>();
+
+        private ParsedFile(final List<ProtoProcessorArgs> args)
+        {
+            this.path = args.get(0).pathToProto;
+            this.args = args;
+        }
+    }
+}
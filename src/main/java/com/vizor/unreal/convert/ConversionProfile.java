@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.util.Locale.ROOT;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.joining;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Collects wall and CPU time of conversion phases, both per proto file and for the whole run, along with some
+ * counters (number of messages, bytes written, cache hits, etc.). Written as JSON with the '--profile' CLI option:
+ * <pre>
+ * {
+ *   "wallMillis": 123.4,
+ *   "cpuMillis": 234.5,
+ *   "phases": { "parse": { "count": 4, "wallMillis": 12.3, "cpuMillis": 10.1 }, ... },
+ *   "counters": { "parseCacheHits": 0, ... },
+ *   "cacheHitRates": { "parse": 0.0, ... },
+ *   "files": [ { "proto": "game/world.proto", "wallMillis": 4.5, "cpuMillis": 4.1, "phases": {...},
+ *                "counters": {...} }, ... ]
+ * }
+ * </pre>
+ * Files are sorted from the slowest to the fastest one.
+ *
+ * A profile is safe to be filled by several threads at once. A disabled profile ignores everything, so the converter
+ * doesn't have to check whether it's being profiled.
+ */
+public final class ConversionProfile
+{
+    private static final Logger log = getLogger(ConversionProfile.class);
+
+    private static final ConversionProfile disabled = new ConversionProfile(false);
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /** How many slowest proto files are logged */
+    private static final int numSlowestLogged = 10;
+
+    /** Counters, whose hit rates are computed, as: rate name, hits counter, misses counter */
+    private static final String[][] hitRates = {
+        { "parse", "parseCacheHits", "parseCacheMisses" },
+        { "protos", "protosUpToDate", "protosConverted" },
+        { "outputs", "outputsUpToDate", "outputsWritten" },
+        { "generation", "generationCacheHits", "generationCacheMisses" }
+    };
+
+    /**
+     * A point in time, phases are measured from.
+     */
+    public static final class Sample
+    {
+        private static final Sample none = new Sample(0, 0);
+
+        private final long wallNanos;
+        private final long cpuNanos;
+
+        private Sample(final long wallNanos, final long cpuNanos)
+        {
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+        }
+    }
+
+    private static final class Phase
+    {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong wallNanos = new AtomicLong();
+        private final AtomicLong cpuNanos = new AtomicLong();
+
+        private void add(final long wall, final long cpu)
+        {
+            count.incrementAndGet();
+            wallNanos.addAndGet(wall);
+            cpuNanos.addAndGet(cpu);
+        }
+    }
+
+    private static final class Record
+    {
+        private final Map<String, Phase> phases = new ConcurrentHashMap<>();
+        private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        private long getWallNanos()
+        {
+            return phases.values().stream().mapToLong(p -> p.wallNanos.get()).sum();
+        }
+
+        private long getCpuNanos()
+        {
+            return phases.values().stream().mapToLong(p -> p.cpuNanos.get()).sum();
+        }
+    }
+
+    private final boolean enabled;
+    private final long startNanos = nanoTime();
+    private volatile long finishNanos = 0;
+
+    private final Record total = new Record();
+    private final Map<String, Record> files = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an enabled profile. The run's wall time is measured from this moment.
+     */
+    public ConversionProfile()
+    {
+        this(true);
+    }
+
+    private ConversionProfile(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return A profile, which ignores everything.
+     */
+    public static ConversionProfile disabled()
+    {
+        return disabled;
+    }
+
+    /**
+     * Starts measuring a phase on the calling thread.
+     *
+     * @return A sample to pass to {@link #record(Sample, String, Path)}, once the phase is over.
+     */
+    public Sample start()
+    {
+        if (!enabled)
+            return Sample.none;
+
+        return new Sample(nanoTime(), getThreadCpuNanos());
+    }
+
+    /**
+     * Records a phase, which has been started on the calling thread.
+     *
+     * @param start A sample, taken when the phase has started.
+     * @param phase Name of the phase.
+     * @param proto A relative path to the proto file, the phase belongs to. Null if the phase belongs to the run.
+     */
+    public void record(final Sample start, final String phase, final Path proto)
+    {
+        if (!enabled)
+            return;
+
+        final long wall = nanoTime() - start.wallNanos;
+        final long cpu = getThreadCpuNanos() - start.cpuNanos;
+
+        total.phases.computeIfAbsent(phase, p -> new Phase()).add(wall, cpu);
+
+        if (nonNull(proto))
+            getRecord(proto).phases.computeIfAbsent(phase, p -> new Phase()).add(wall, cpu);
+    }
+
+    /**
+     * Increments a counter.
+     *
+     * @param counter Name of the counter.
+     * @param proto A relative path to the proto file, the counter belongs to. Null if the counter belongs to the run.
+     * @param delta A value to add to the counter.
+     */
+    public void count(final String counter, final Path proto, final long delta)
+    {
+        if (!enabled)
+            return;
+
+        total.counters.computeIfAbsent(counter, c -> new AtomicLong()).addAndGet(delta);
+
+        if (nonNull(proto))
+            getRecord(proto).counters.computeIfAbsent(counter, c -> new AtomicLong()).addAndGet(delta);
+    }
+
+    /**
+     * Stops the run's clock, logs the slowest proto files and writes the profile.
+     *
+     * @param path A path to the JSON file to write.
+     */
+    public void report(final Path path)
+    {
+        if (!enabled)
+            return;
+
+        if (finishNanos == 0)
+            finishNanos = nanoTime();
+
+        logSlowest();
+
+        try (final Writer writer = newBufferedWriter(path, UTF_8))
+        {
+            writer.write(toJson());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        log.info("Conversion profile has been written to '{}'", path);
+    }
+
+    private void logSlowest()
+    {
+        final List<Map.Entry<String, Record>> slowest = getSortedFiles();
+        if (slowest.isEmpty())
+            return;
+
+        log.info("Slowest proto-files:");
+        slowest.stream().limit(numSlowestLogged).forEach(e -> log.info("  {}: {} ms ({})", e.getKey(),
+            millis(e.getValue().getWallNanos()), new TreeMap<>(e.getValue().phases).entrySet().stream()
+                .map(p -> p.getKey() + " " + millis(p.getValue().wallNanos.get()) + " ms")
+                .collect(joining(", "))));
+    }
+
+    private String toJson()
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("{\n");
+        sb.append("  \"wallMillis\": ").append(millis(finishNanos - startNanos)).append(",\n");
+        sb.append("  \"cpuMillis\": ").append(millis(total.getCpuNanos())).append(",\n");
+        sb.append("  \"phases\": ");
+        appendPhases(sb, total, "  ");
+        sb.append(",\n  \"counters\": ");
+        appendCounters(sb, total, "  ");
+        sb.append(",\n  \"cacheHitRates\": {");
+
+        String separator = "\n";
+        for (final String[] rate : hitRates)
+        {
+            final long hits = getCounter(total, rate[1]);
+            final long misses = getCounter(total, rate[2]);
+
+            sb.append(separator).append("    ").append(quote(rate[0])).append(": ")
+                .append((hits + misses > 0) ? format(ROOT, "%.3f", (double) hits / (hits + misses)) : "null");
+            separator = ",\n";
+        }
+
+        sb.append("\n  },\n  \"files\": [");
+
+        separator = "\n";
+        for (final Map.Entry<String, Record> file : getSortedFiles())
+        {
+            final Record record = file.getValue();
+
+            sb.append(separator).append("    {\n");
+            sb.append("      \"proto\": ").append(quote(file.getKey())).append(",\n");
+            sb.append("      \"wallMillis\": ").append(millis(record.getWallNanos())).append(",\n");
+            sb.append("      \"cpuMillis\": ").append(millis(record.getCpuNanos())).append(",\n");
+            sb.append("      \"phases\": ");
+            appendPhases(sb, record, "      ");
+            sb.append(",\n      \"counters\": ");
+            appendCounters(sb, record, "      ");
+            sb.append("\n    }");
+
+            separator = ",\n";
+        }
+
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private static void appendPhases(final StringBuilder sb, final Record record, final String indent)
+    {
+        sb.append('{');
+
+        String separator = "\n";
+        for (final Map.Entry<String, Phase> e : new TreeMap<>(record.phases).entrySet())
+        {
+            final Phase phase = e.getValue();
+
+            sb.append(separator).append(indent).append("  ").append(quote(e.getKey())).append(": { ")
+                .append("\"count\": ").append(phase.count.get()).append(", ")
+                .append("\"wallMillis\": ").append(millis(phase.wallNanos.get())).append(", ")
+                .append("\"cpuMillis\": ").append(millis(phase.cpuNanos.get())).append(" }");
+
+            separator = ",\n";
+        }
+
+        sb.append('\n').append(indent).append('}');
+    }
+
+    private static void appendCounters(final StringBuilder sb, final Record record, final String indent)
+    {
+        sb.append('{');
+
+        String separator = "\n";
+        for (final Map.Entry<String, AtomicLong> e : new TreeMap<>(record.counters).entrySet())
+        {
+            sb.append(separator).append(indent).append("  ").append(quote(e.getKey())).append(": ")
+                .append(e.getValue().get());
+
+            separator = ",\n";
+        }
+
+        sb.append('\n').append(indent).append('}');
+    }
+
+    private List<Map.Entry<String, Record>> getSortedFiles()
+    {
+        final List<Map.Entry<String, Record>> sorted = new ArrayList<>(new TreeMap<>(files).entrySet());
+        sorted.sort(Comparator.comparingLong((Map.Entry<String, Record> e) -> e.getValue().getWallNanos()).reversed());
+
+        return sorted;
+    }
+
+    private Record getRecord(final Path proto)
+    {
+        // Keys should look the same way on every platform
+        return files.computeIfAbsent(proto.toString().replace('\\', '/'), p -> new Record());
+    }
+
+    private static long getCounter(final Record record, final String counter)
+    {
+        final AtomicLong value = record.counters.get(counter);
+        return isNull(value) ? 0 : value.get();
+    }
+
+    private static long getThreadCpuNanos()
+    {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static String millis(final long nanos)
+    {
+        return format(ROOT, "%.3f", nanos / 1000000.0);
+    }
+
+    private static String quote(final String s)
+    {
+        final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+
+        for (final char c : s.toCharArray())
+        {
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < ' ')
+                sb.append(format(ROOT, "\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+
+        return sb.append('"').toString();
+    }
+}
@@ -15,29 +15,35 @@
  */
 package com.vizor.unreal.convert;
 
-import com.squareup.wire.ProtoAdapter;
 import com.squareup.wire.schema.internal.parser.ProtoFileElement;
 import com.vizor.unreal.config.Config;
 import com.vizor.unreal.config.DestinationConfig;
 import com.vizor.unreal.preprocess.NestedTypesRemover;
 import com.vizor.unreal.preprocess.Preprocessor;
+import com.vizor.unreal.util.Shard;
 import com.vizor.unreal.util.Tuple;
+import com.vizor.unreal.writer.DiskOutputSink;
+import com.vizor.unreal.writer.OutputSink;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.squareup.wire.schema.Location.get;
 import static com.squareup.wire.schema.internal.parser.ProtoParser.parse;
-import static java.lang.String.join;
-import static java.lang.System.lineSeparator;
-import static java.nio.file.Files.readAllLines;
+import static com.vizor.unreal.util.Misc.findFilesRecursively;
+import static com.vizor.unreal.util.Misc.sha256Hex;
 import static java.util.Arrays.asList;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.logging.log4j.LogManager.getLogger;
 
 public class Converter
@@ -51,58 +57,223 @@ public class Converter
         // Add new ones if you want to...
     );
 
+    private final Config config;
     private final String moduleName;
+    private final boolean warm;
+    private final OutputSink sink;
 
-    public Converter(final String moduleName)
+    /** Parse results, reused by the next runs while the proto file's source stays the same (warm mode only) */
+    private final Map<Path, ParsedProto> parseCache = new ConcurrentHashMap<>();
+
+    /** A cache of generated files, shared by all runs (and possibly, by other processes) */
+    private final GenerationCache cache;
+
+    /** Changes tracking, kept between runs (warm mode only) */
+    private GenerationManifest warmManifest = null;
+
+    public Converter(final Config config)
     {
-        this.moduleName = moduleName;
+        this(config, false);
     }
 
-    public void convert(final Path srcPath, final List<Tuple<Path, DestinationConfig>> paths)
+    /**
+     * @param config Config to convert with. The converter doesn't rely on the global config, so several converters
+     *               with different configs may co-exist within the same process.
+     * @param warm True if the converter is going to run several times within the same process (e.g. in watch mode).
+     *             A warm converter remembers parse results and outputs of previous runs, so next runs only re-parse
+     *             changed proto files and only convert changed proto files and the ones, importing them.
+     */
+    public Converter(final Config config, final boolean warm)
     {
-        List<ProtoProcessorArgs> args = new ArrayList<>();
+        this(config, warm, new DiskOutputSink());
+    }
 
-        Stream<Tuple<Path, DestinationConfig>> pathsStream = paths.stream();
+    /**
+     * @param config Config to convert with.
+     * @param warm True if the converter is going to run several times within the same process.
+     * @param sink A sink to write generated files into, instead of the destination folders.
+     */
+    public Converter(final Config config, final boolean warm, final OutputSink sink)
+    {
+        this.config = requireNonNull(config);
+        this.moduleName = config.getModuleName();
+        this.warm = warm;
+        this.sink = requireNonNull(sink);
+        this.cache = GenerationCache.open(config);
+    }
 
-        pathsStream.forEach(pathPair -> {
-            final Path pathToProto = pathPair.first();
-            final DestinationConfig pathToConverted = pathPair.second();
-            
-            String fileContent = null;
-            
-            try 
-            {
-                fileContent = join(lineSeparator(), readAllLines(pathPair.first()));
-            }
-            catch (IOException ex)
-            {
-                throw new RuntimeException(ex);
-            }
+    /**
+     * Creates source and destination folders if they don't exist. Destination folders are prepared by the sink, so
+     * an in-memory sink doesn't create anything.
+     */
+    public void prepareDirectories()
+    {
+        final Path srcPath = Paths.get(config.getSrcPath());
 
-            final List<ProtoProcessorArgs> protoArgs = preProcess(parse(get(pathToProto.toString()), fileContent))
-                .stream()
-                .map(
-                    protoFile -> 
-                    {
-                        final Path relativePath = srcPath.relativize(pathToProto); 
-                        return new ProtoProcessorArgs(protoFile, relativePath, pathToConverted, moduleName);
-                    })
-                .collect(Collectors.toList());
+        if (!srcPath.toFile().isDirectory())
+            if(!srcPath.toFile().mkdirs())
+                throw new IllegalArgumentException("Source folder '" + srcPath + "' does not exist, or isn't a directory");
 
-            args.addAll(protoArgs);
-        });
+        sink.prepare(config.getDstPath());
+    }
 
-        Stream<ProtoProcessorArgs> argsStream = args.stream();
+    /**
+     * Converts all proto files, found in the configured source folder.
+     */
+    public void convert()
+    {
+        convert(ConversionProfile.disabled());
+    }
 
-        if (!Config.get().isNoFork())
+    /**
+     * Converts all proto files, found in the configured source folder.
+     *
+     * @param profile A profile to record timings of the conversion into.
+     */
+    public void convert(final ConversionProfile profile)
+    {
+        prepareDirectories();
+
+        final Path srcPath = Paths.get(config.getSrcPath());
+        final List<Tuple<Path, DestinationConfig>> paths = findFilesRecursively(srcPath, config.getDstPath(), "proto");
+
+        // Display how many proto file(s) pending processed
+        log.info("Running converter, {} proto-files pending processed.", paths.size());
+        convert(srcPath, paths, profile);
+    }
+
+    public void convert(final Path srcPath, final List<Tuple<Path, DestinationConfig>> paths,
+                        final ConversionProfile profile)
+    {
+        try (final GenerationScheduler scheduler = new GenerationScheduler(config.getEffectiveJobs()))
         {
-            argsStream = argsStream.parallel();
+            log.info("Converting with {} thread(s)", scheduler.getNumThreads());
+            convert(srcPath, paths, scheduler, profile);
         }
+    }
+
+    private void convert(final Path srcPath, final List<Tuple<Path, DestinationConfig>> paths,
+                         final GenerationScheduler scheduler, final ConversionProfile profile)
+    {
+        // In incremental (or warm) mode convert only changed proto files (and ones, importing them)
+        final GenerationManifest manifest = getManifest();
+        if (nonNull(manifest))
+            manifest.reset();
 
-        argsStream.forEach(arg -> {
-            log.info("Converting {}", arg.pathToProto);
-            new ProtoProcessor(arg, args).run();
-        });
+        // A shard only converts its own proto files, but the whole set is still needed to resolve imports
+        final Shard shard = config.getEffectiveShard();
+        final Set<Path> converted = shard.isWhole() ? null : ShardPlanner.plan(srcPath,
+                paths.stream().map(Tuple::first).collect(toList()), shard, scheduler);
+
+        final ConversionPipeline pipeline = new ConversionPipeline(config, sink, scheduler, manifest, cache, profile,
+                (pathToProto, pathToConverted) -> parseSingle(srcPath, pathToProto, pathToConverted, profile));
+
+        try
+        {
+            pipeline.run(srcPath, paths, converted);
+        }
+        finally
+        {
+            // Forget removed proto files
+            if (warm)
+                parseCache.keySet().retainAll(paths.stream().map(Tuple::first).collect(toSet()));
+        }
+
+        final ConversionProfile.Sample start = profile.start();
+
+        if (nonNull(manifest))
+            manifest.pruneRemoved(paths.stream().map(p -> srcPath.relativize(p.first())).collect(toList()));
+
+        // Only save the manifest if everything was converted successfully
+        if (config.isIncremental())
+            manifest.save();
+        else if (nonNull(manifest))
+            manifest.commit();
+
+        profile.record(start, "manifest", null);
+    }
+
+    private GenerationManifest getManifest()
+    {
+        if (nonNull(warmManifest))
+            return warmManifest;
+
+        final GenerationManifest manifest;
+        if (config.isIncremental())
+            manifest = GenerationManifest.load(config.getDstPath(), config.getOutputFingerprint(),
+                    config.getEffectiveShard(), sink);
+        else if (warm)
+            manifest = GenerationManifest.empty(config.getDstPath(), config.getOutputFingerprint(), sink);
+        else
+            return null;
+
+        if (warm)
+            warmManifest = manifest;
+
+        return manifest;
+    }
+
+    /**
+     * Reads, parses and preprocesses a single proto file. Called by the pipeline's threads.
+     *
+     * @param srcPath Root folder of all proto files.
+     * @param pathToProto Path to the proto file.
+     * @param pathToConverted Destination of the proto file.
+     * @param profile A profile to record timings into.
+     * @return Parsed proto file, ready to be converted.
+     */
+    private List<ProtoProcessorArgs> parseSingle(final Path srcPath, final Path pathToProto,
+                                                 final DestinationConfig pathToConverted,
+                                                 final ConversionProfile profile)
+    {
+        final Path relativePath = srcPath.relativize(pathToProto);
+        final String fileContent;
+
+        ConversionProfile.Sample start = profile.start();
+
+        try
+        {
+            fileContent = ProtoSourceReader.forCurrentThread().read(pathToProto);
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+
+        final String sourceHash = sha256Hex(fileContent);
+
+        profile.count("sourceChars", relativePath, fileContent.length());
+        profile.record(start, "read", relativePath);
+
+        // Parse trees are released after conversion in streaming mode, so there's nothing to reuse
+        final boolean reuseParse = warm && !config.isStreaming();
+
+        if (reuseParse)
+        {
+            final ParsedProto cached = parseCache.get(pathToProto);
+            if (nonNull(cached) && cached.sourceHash.equals(sourceHash))
+            {
+                profile.count("parseCacheHits", null, 1);
+                return cached.args;
+            }
+
+            profile.count("parseCacheMisses", null, 1);
+        }
+
+        start = profile.start();
+        final ProtoFileElement parsed = parse(get(pathToProto.toString()), fileContent);
+        profile.record(start, "parse", relativePath);
+
+        start = profile.start();
+        final List<ProtoProcessorArgs> args = preProcess(parsed).stream()
+            .map(protoFile -> new ProtoProcessorArgs(protoFile, relativePath, pathToConverted, moduleName, sourceHash))
+            .collect(toList());
+        profile.record(start, "preprocess", relativePath);
+
+        if (reuseParse)
+            parseCache.put(pathToProto, new ParsedProto(sourceHash, args));
+
+        return args;
     }
 
     private List<ProtoFileElement> preProcess(ProtoFileElement element)
@@ -134,4 +305,16 @@ public class Converter
 
         return elements;
     }
+
+    private static final class ParsedProto
+    {
+        private final String sourceHash;
+        private final List<ProtoProcessorArgs> args;
+
+        private ParsedProto(final String sourceHash, final List<ProtoProcessorArgs> args)
+        {
+            this.sourceHash = sourceHash;
+            this.args = args;
+        }
+    }
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.config.DestinationConfig;
+import com.vizor.unreal.writer.GeneratedFile;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.vizor.unreal.util.Misc.createTempSibling;
+import static com.vizor.unreal.util.Misc.newSha256Digest;
+import static com.vizor.unreal.util.Misc.sha256Hex;
+import static com.vizor.unreal.util.Misc.stringIsNullOrEmpty;
+import static com.vizor.unreal.util.Misc.toHex;
+import static java.lang.System.lineSeparator;
+import static java.nio.charset.Charset.defaultCharset;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.size;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Paths.get;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.isNull;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A content-addressed cache of generated files, which may be shared by several machines (e.g. CI agents), pointing
+ * to the same (network) folder.
+ *
+ * Outputs of a proto file are stored under a key, which is a hash of:
+ * <ul>
+ *     <li>the generator's own code, so a new build of the generator never reuses outputs of an older one;</li>
+ *     <li>config options, affecting the generated code (but not the locations of the source and destination
+ *         folders, which differ between machines);</li>
+ *     <li>the line separator and the charset, generated files are written with, since they differ between
+ *         platforms;</li>
+ *     <li>relative path and content of the proto file and all files it imports (transitively).</li>
+ * </ul>
+ *
+ * Each entry is a single file, which is written into a temporary file first and then atomically moved into place,
+ * so concurrent readers and writers never observe partially written entries. The cache is only an optimization,
+ * so failures to read or write it are logged, but never fail the conversion.
+ */
+final class GenerationCache
+{
+    private static final Logger log = getLogger(GenerationCache.class);
+
+    private static final String entryExtension = ".entry";
+
+    /** Changes whenever the layout of the entries changes */
+    static final int formatVersion = 1;
+
+    private static String generatorHash = null;
+
+    private final Path cacheDir;
+    private final DestinationConfig dstPath;
+    private final String configHash;
+
+    private GenerationCache(final Path cacheDir, final DestinationConfig dstPath, final String configFingerprint)
+    {
+        this.cacheDir = cacheDir;
+        this.dstPath = dstPath;
+        this.configHash = sha256Hex(getGeneratorHash(), "\n", configFingerprint, "\n", lineSeparator(), "\n",
+                defaultCharset().name());
+    }
+
+    /**
+     * Opens the cache, the config points to.
+     *
+     * @param config Config to convert with.
+     * @return A cache, or null if the config doesn't specify any cache folder.
+     */
+    static GenerationCache open(final Config config)
+    {
+        if (stringIsNullOrEmpty(config.getCacheDir()))
+            return null;
+
+        final Path cacheDir = get(config.getCacheDir());
+        log.info("Using generation cache at '{}'", cacheDir);
+
+        return new GenerationCache(cacheDir, config.getDstPath(), config.getContentFingerprint());
+    }
+
+    /**
+     * Computes a key of a proto file's outputs.
+     *
+     * @param arg A proto file.
+     * @param closure The import closure of the proto file.
+     * @return A key of the proto file's outputs.
+     */
+    String getKey(final ProtoProcessorArgs arg, final List<ProtoProcessorArgs> closure)
+    {
+        final String sources = closure.stream()
+            .map(a -> getKey(a.pathToProto) + ':' + a.sourceHash)
+            .sorted()
+            .collect(joining("\n"));
+
+        return sha256Hex(configHash, "\n", getKey(arg.pathToProto), "\n", sources);
+    }
+
+    /**
+     * Looks up outputs of a proto file.
+     *
+     * @param key A key, computed by {@link #getKey(ProtoProcessorArgs, List)}.
+     * @param arg The proto file.
+     * @return Outputs of the proto file, placed into the current destination folders, or null if not cached.
+     */
+    List<GeneratedFile> load(final String key, final ProtoProcessorArgs arg)
+    {
+        final Path entryPath = getEntryPath(key);
+        final List<Path> outputPaths = ProtoProcessor.getOutputPaths(arg, dstPath);
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(newInputStream(entryPath))))
+        {
+            if (in.readInt() != formatVersion || in.readInt() != outputPaths.size())
+                return null;
+
+            // Entries might be shared and broken, so lengths are checked before anything is allocated
+            final long entrySize = size(entryPath);
+
+            final Map<String, byte[]> contents = new HashMap<>();
+            for (int i = 0; i < outputPaths.size(); i++)
+            {
+                final String name = in.readUTF();
+                final int length = in.readInt();
+
+                if (length < 0 || length > entrySize)
+                    throw new IOException("Malformed entry, content of '" + name + "' is " + length + " bytes long");
+
+                final byte[] content = new byte[length];
+                in.readFully(content);
+
+                contents.put(name, content);
+            }
+
+            // Files are stored by their names, which are placed into the current destination folders
+            final List<GeneratedFile> files = new ArrayList<>(outputPaths.size());
+            for (final Path outputPath : outputPaths)
+            {
+                final byte[] content = contents.get(outputPath.getFileName().toString());
+                if (isNull(content))
+                    return null;
+
+                files.add(new GeneratedFile(outputPath, content));
+            }
+
+            return files;
+        }
+        catch (NoSuchFileException e)
+        {
+            return null;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.warn("Unable to read generation cache entry '{}', converting {}: {}", entryPath, arg, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Stores outputs of a proto file.
+     *
+     * @param key A key, computed by {@link #getKey(ProtoProcessorArgs, List)}.
+     * @param files Outputs of the proto file, see {@link ProtoProcessor#getOutputPaths}.
+     */
+    void store(final String key, final List<GeneratedFile> files)
+    {
+        final Path entryPath = getEntryPath(key);
+
+        try
+        {
+            final Path directory = entryPath.getParent();
+            createDirectories(directory);
+
+            final Path temp = createTempSibling(entryPath);
+            try
+            {
+                try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(newOutputStream(temp))))
+                {
+                    out.writeInt(formatVersion);
+                    out.writeInt(files.size());
+
+                    for (final GeneratedFile file : files)
+                    {
+                        out.writeUTF(file.getPath().getFileName().toString());
+                        out.writeInt(file.getContent().length);
+                        out.write(file.getContent());
+                    }
+                }
+
+                try
+                {
+                    move(temp, entryPath, REPLACE_EXISTING, ATOMIC_MOVE);
+                }
+                catch (AtomicMoveNotSupportedException e)
+                {
+                    move(temp, entryPath, REPLACE_EXISTING);
+                }
+            }
+            finally
+            {
+                deleteIfExists(temp);
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.warn("Unable to write generation cache entry '{}': {}", entryPath, e.toString());
+        }
+    }
+
+    private Path getEntryPath(final String key)
+    {
+        // Spread entries over sub-folders, so no folder gets too large
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key + entryExtension);
+    }
+
+    private static String getKey(final Path pathToProto)
+    {
+        // Keys should look the same way on every platform
+        return pathToProto.toString().replace('\\', '/');
+    }
+
+    /**
+     * Hashes the code of the generator (its jar, or its classes when it isn't packed), once per process.
+     *
+     * @return A hash of the generator's code.
+     */
+    private static synchronized String getGeneratorHash()
+    {
+        if (isNull(generatorHash))
+            generatorHash = computeGeneratorHash();
+
+        return generatorHash;
+    }
+
+    private static String computeGeneratorHash()
+    {
+        try
+        {
+            final MessageDigest digest = newSha256Digest();
+            final Path codeSource = get(GenerationCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+            if (isRegularFile(codeSource))
+            {
+                update(digest, codeSource);
+            }
+            else if (isDirectory(codeSource))
+            {
+                final List<Path> files;
+                try (final Stream<Path> paths = walk(codeSource))
+                {
+                    files = paths.filter(p -> isRegularFile(p)).sorted().collect(toList());
+                }
+
+                for (final Path file : files)
+                {
+                    digest.update(codeSource.relativize(file).toString().replace('\\', '/').getBytes(UTF_8));
+                    update(digest, file);
+                }
+            }
+            else
+            {
+                throw new IOException("Unknown code source '" + codeSource + "'");
+            }
+
+            return toHex(digest.digest());
+        }
+        catch (IOException | URISyntaxException | RuntimeException e)
+        {
+            throw new RuntimeException("Unable to determine the generator's version for the generation cache", e);
+        }
+    }
+
+    private static void update(final MessageDigest digest, final Path file) throws IOException
+    {
+        final byte[] buffer = new byte[1 << 16];
+
+        try (final InputStream in = newInputStream(file))
+        {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                digest.update(buffer, 0, read);
+        }
+    }
+}
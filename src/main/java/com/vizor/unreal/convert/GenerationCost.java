@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.squareup.wire.schema.internal.parser.EnumElement;
+import com.squareup.wire.schema.internal.parser.MessageElement;
+import com.squareup.wire.schema.internal.parser.OneOfElement;
+import com.squareup.wire.schema.internal.parser.ServiceElement;
+import com.squareup.wire.schema.internal.parser.TypeElement;
+
+/**
+ * Estimates how long conversion of a parsed proto file takes, so the most expensive files can be converted first,
+ * rather than becoming stragglers at the very end of the run.
+ *
+ * Estimates are only compared with each other, so they're in arbitrary units. Weights roughly follow a profile of
+ * the converter: each field costs a type lookup, whose cost grows with the number of visible types (thus, with the
+ * number of imported files), each message becomes a struct and a pair of casts, each RPC becomes a bunch of methods
+ * and delegates.
+ */
+final class GenerationCost
+{
+    private static final long fieldWeight = 2;
+    private static final long messageWeight = 8;
+    private static final long enumWeight = 2;
+    private static final long rpcWeight = 16;
+
+    /** Imported files, making each type lookup twice as expensive */
+    private static final long importsPerDoubling = 8;
+
+    private GenerationCost()
+    {
+    }
+
+    /**
+     * @param arg A parsed proto file.
+     * @param closureSize Number of files in the import closure of the proto file, including itself.
+     * @return Estimated cost of the proto file's conversion, always positive.
+     */
+    static long estimate(final ProtoProcessorArgs arg, final int closureSize)
+    {
+        long numFields = 0;
+        long cost = 1;
+
+        for (final TypeElement type : arg.parse.types())
+        {
+            if (type instanceof MessageElement)
+            {
+                final MessageElement message = (MessageElement) type;
+
+                numFields += message.fields().size();
+                for (final OneOfElement oneOf : message.oneOfs())
+                    numFields += oneOf.fields().size();
+
+                cost += messageWeight;
+            }
+            else if (type instanceof EnumElement)
+            {
+                cost += enumWeight;
+            }
+        }
+
+        for (final ServiceElement service : arg.parse.services())
+            cost += rpcWeight * service.rpcs().size();
+
+        cost += fieldWeight * numFields * (importsPerDoubling + closureSize) / importsPerDoubling;
+        return cost;
+    }
+}
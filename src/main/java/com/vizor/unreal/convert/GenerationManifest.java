@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.config.DestinationConfig;
+import com.vizor.unreal.util.Shard;
+import com.vizor.unreal.writer.GeneratedFile;
+import com.vizor.unreal.writer.OutputSink;
+import org.apache.logging.log4j.Logger;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.DumperOptions.FlowStyle;
+import org.yaml.snakeyaml.Yaml;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.vizor.unreal.util.Misc.sha256Hex;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Paths.get;
+import static java.util.Collections.emptyMap;
+import static java.util.Objects.isNull;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Remembers what has been generated during the previous run, so an incremental run converts only proto files, whose
+ * own content or content of their (transitively) imported files has changed. Outputs of the removed proto files are
+ * deleted.
+ *
+ * The manifest is a YAML file, placed into the public destination folder (each shard has its own one) of the output
+ * sink, along with the generated files, and looks like:
+ * <pre>
+ * config: 'hash of the config options, affecting the output'
+ * protos:
+ *   game/player.proto:
+ *     closure: 'hash of the proto and all protos it imports'
+ *     outputs: ['paths to', 'generated files']
+ * </pre>
+ */
+final class GenerationManifest
+{
+    private static final Logger log = getLogger(GenerationManifest.class);
+
+    private static final String manifestFileName = ".cornerstone-manifest";
+    private static final String manifestExtension = ".yml";
+
+    private static final String configKey = "config";
+    private static final String protosKey = "protos";
+    private static final String closureKey = "closure";
+    private static final String outputsKey = "outputs";
+
+    private final OutputSink sink;
+    private final Path manifestPath;
+    private final DestinationConfig dstPath;
+    private final String configHash;
+
+    private Map<String, Map<String, Object>> previousEntries;
+    // Sorted, because proto files are recorded in no particular order
+    private final Map<String, Map<String, Object>> entries = new TreeMap<>();
+
+    private GenerationManifest(final OutputSink sink, final DestinationConfig dstPath, final Path manifestPath,
+                               final String configHash, final Map<String, Map<String, Object>> previousEntries)
+    {
+        this.sink = sink;
+        this.manifestPath = manifestPath;
+        this.dstPath = dstPath;
+        this.configHash = configHash;
+        this.previousEntries = previousEntries;
+    }
+
+    /**
+     * Loads a manifest, written by the previous run into the destination folder. If there is no manifest, or it was
+     * written for a different config, every proto file is treated as changed.
+     *
+     * @param dstPath Destination, where the generated files are placed.
+     * @param configFingerprint Fingerprint of config options, affecting the generated code.
+     * @param shard A shard, the manifest tracks proto files of.
+     * @param sink A sink, where the generated files are written.
+     * @return Loaded manifest.
+     */
+    static GenerationManifest load(final DestinationConfig dstPath, final String configFingerprint,
+                                   final Shard shard, final OutputSink sink)
+    {
+        final String configHash = sha256Hex(configFingerprint);
+        final Path manifestPath = getManifestPath(dstPath, shard);
+
+        try
+        {
+            final byte[] content = sink.read(manifestPath);
+            if (isNull(content))
+            {
+                log.info("No generation manifest found at '{}', converting everything", manifestPath);
+                return new GenerationManifest(sink, dstPath, manifestPath, configHash, emptyMap());
+            }
+
+            final Object loaded = new Yaml().load(new String(content, UTF_8));
+
+            if (loaded instanceof Map)
+            {
+                final Map<?, ?> root = (Map<?, ?>) loaded;
+
+                if (!Objects.equals(configHash, root.get(configKey)))
+                {
+                    log.info("Config has changed since the previous run, converting everything");
+                }
+                else if (root.get(protosKey) instanceof Map)
+                {
+                    @SuppressWarnings("unchecked")
+                    final Map<String, Map<String, Object>> protos = (Map<String, Map<String, Object>>) root.get(protosKey);
+                    return new GenerationManifest(sink, dstPath, manifestPath, configHash, protos);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            log.warn("Unable to read generation manifest '{}', converting everything: {}", manifestPath, e.toString());
+        }
+
+        return new GenerationManifest(sink, dstPath, manifestPath, configHash, emptyMap());
+    }
+
+    /**
+     * Creates a manifest, which doesn't know anything about previous runs, so every proto file is treated as changed.
+     * Useful to track changes in memory, when the converter runs several times within the same process.
+     *
+     * @param dstPath Destination, where the generated files are placed.
+     * @param configFingerprint Fingerprint of config options, affecting the generated code.
+     * @param sink A sink, where the generated files are written.
+     * @return An empty manifest.
+     */
+    static GenerationManifest empty(final DestinationConfig dstPath, final String configFingerprint,
+                                    final OutputSink sink)
+    {
+        return new GenerationManifest(sink, dstPath, getManifestPath(dstPath, Shard.whole()),
+                sha256Hex(configFingerprint), emptyMap());
+    }
+
+    /**
+     * Forgets the recorded state, so proto files can be recorded again for the next run.
+     */
+    void reset()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Records the current state of a proto file and tells whether it needs to be converted again.
+     *
+     * @param arg A proto file, found in the source folder.
+     * @param closure The proto file, followed by all proto files it imports, directly or transitively.
+     * @return True if the proto file has to be converted.
+     */
+    boolean record(final ProtoProcessorArgs arg, final List<ProtoProcessorArgs> closure)
+    {
+        final String key = getKey(arg);
+        final String closureHash = computeClosureHash(closure);
+        final List<String> outputs = ProtoProcessor.getOutputPaths(arg, dstPath).stream()
+            .map(Path::toString)
+            .collect(toList());
+
+        final Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put(closureKey, closureHash);
+        entry.put(outputsKey, outputs);
+        entries.put(key, entry);
+
+        final Map<String, Object> previous = previousEntries.get(key);
+        return isNull(previous) || !closureHash.equals(previous.get(closureKey)) || !outputsExist(outputs);
+    }
+
+    /**
+     * Makes the recorded state a baseline for the next run. Should only be called after all outdated proto
+     * files have been successfully converted.
+     */
+    void commit()
+    {
+        previousEntries = new LinkedHashMap<>(entries);
+    }
+
+    /**
+     * Writes the manifest into the destination folder of the sink and commits it. Should only be called after all
+     * outdated proto files have been successfully converted.
+     */
+    void save()
+    {
+        final Map<String, Object> root = new LinkedHashMap<>();
+        root.put(configKey, configHash);
+        root.put(protosKey, entries);
+
+        final DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(FlowStyle.BLOCK);
+
+        // Written the same way as generated files, so the manifest is kept wherever they are
+        final String dumped = new Yaml(options).dump(root);
+        sink.write(new GeneratedFile(manifestPath, dumped.getBytes(UTF_8)));
+
+        commit();
+    }
+
+    /**
+     * Removes outputs of the proto files, which were recorded by the previous run, but don't exist anymore. Should
+     * only be called after all proto files of this run have been recorded.
+     *
+     * @param protos Relative paths of all existing proto files, including ones, which belong to other shards.
+     */
+    void pruneRemoved(final Collection<Path> protos)
+    {
+        final Set<String> existing = protos.stream().map(GenerationManifest::getKey).collect(toSet());
+
+        // A removed proto file might share its outputs with an existing one, these outputs must be kept
+        final Set<Object> currentOutputs = entries.values().stream()
+            .flatMap(e -> ((List<?>) e.get(outputsKey)).stream())
+            .collect(toSet());
+
+        previousEntries.forEach((key, previous) -> {
+            if (entries.containsKey(key) || existing.contains(key) || !(previous.get(outputsKey) instanceof List))
+                return;
+
+            log.info("{} has been removed, deleting its outputs", key);
+            for (final Object output : (List<?>) previous.get(outputsKey))
+            {
+                if (currentOutputs.contains(output))
+                    continue;
+
+                sink.delete(get(String.valueOf(output)));
+            }
+        });
+    }
+
+    private boolean outputsExist(final List<String> outputs)
+    {
+        return outputs.stream().allMatch(o -> sink.exists(get(o)));
+    }
+
+    private static String computeClosureHash(final List<ProtoProcessorArgs> closureArgs)
+    {
+        final String closure = closureArgs.stream()
+            .map(a -> getKey(a) + ':' + a.sourceHash)
+            .sorted()
+            .collect(joining("\n"));
+
+        return sha256Hex(closure);
+    }
+
+    private static String getKey(final ProtoProcessorArgs arg)
+    {
+        return getKey(arg.pathToProto);
+    }
+
+    private static String getKey(final Path pathToProto)
+    {
+        // Keys should look the same way on every platform
+        return pathToProto.toString().replace('\\', '/');
+    }
+
+    private static Path getManifestPath(final DestinationConfig dstPath, final Shard shard)
+    {
+        final String suffix = shard.isWhole() ? "" : ".shard-" + shard.getIndex() + "-of-" + shard.getCount();
+        return dstPath.pathPublic.resolve(manifestFileName + suffix + manifestExtension);
+    }
+}
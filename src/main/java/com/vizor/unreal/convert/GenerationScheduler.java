@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Runs conversion tasks on its own fixed-size thread pool, so the number of threads used by the converter can be
+ * controlled (see the 'jobs' option) and the converter doesn't compete for the common ForkJoinPool with anyone else.
+ *
+ * A single-threaded scheduler runs tasks right in the calling thread.
+ */
+final class GenerationScheduler implements AutoCloseable
+{
+    private static final Logger log = getLogger(GenerationScheduler.class);
+
+    private static final long shutdownTimeoutSeconds = 10;
+
+    private final int numThreads;
+    private final ExecutorService executor;
+
+    GenerationScheduler(final int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("numThreads must be positive, got " + numThreads + " instead");
+
+        this.numThreads = numThreads;
+        this.executor = (numThreads > 1) ? newFixedThreadPool(numThreads, new WorkerThreadFactory()) : null;
+    }
+
+    int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Runs the task on one of the scheduler's threads, or right away, if the scheduler is single-threaded.
+     *
+     * @param task A task to run. Should handle its own failures, they aren't reported anywhere else.
+     */
+    void execute(final Runnable task)
+    {
+        if (executor == null)
+            task.run();
+        else
+            executor.execute(task);
+    }
+
+    @Override
+    public void close()
+    {
+        if (executor == null)
+            return;
+
+        executor.shutdownNow();
+
+        try
+        {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, SECONDS))
+                log.warn("Some conversion tasks haven't finished within {} seconds", shutdownTimeoutSeconds);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(r, "cornerstone-worker-" + counter.incrementAndGet());
+
+            // Don't prevent the JVM from exiting if the scheduler wasn't closed
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.Paths.get;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Comparator.comparingInt;
+
+/**
+ * Import relations between parsed proto files. Proto files are added one by one, each after all files it imports,
+ * so direct imports and transitive import closures of a proto file are computed once, when the file is added, rather
+ * than recomputed by scanning all other proto files.
+ *
+ * Files may be added by a single thread, while others look up files, added earlier.
+ */
+final class ImportGraph
+{
+    private final Map<Path, Integer> pathIndices = new HashMap<>();
+    private final Map<Path, List<ProtoProcessorArgs>> argsByPath = new HashMap<>();
+    private final Map<ProtoProcessorArgs, Integer> indices = new HashMap<>();
+
+    private final Map<ProtoProcessorArgs, List<ProtoProcessorArgs>> imports = new ConcurrentHashMap<>();
+    private final Map<ProtoProcessorArgs, List<ProtoProcessorArgs>> closures = new ConcurrentHashMap<>();
+
+    /**
+     * @param paths Relative paths of all proto files, which are going to be added. Imports are sorted the same way
+     *              as these paths, so the generated includes are stable.
+     */
+    ImportGraph(final List<Path> paths)
+    {
+        for (final Path path : paths)
+            pathIndices.putIfAbsent(path, pathIndices.size());
+    }
+
+    /**
+     * Tells whether the path belongs to one of proto files, which are going to be added.
+     *
+     * @param path A relative path to a proto file.
+     * @return True if the proto file is known.
+     */
+    boolean isKnown(final Path path)
+    {
+        return pathIndices.containsKey(path);
+    }
+
+    /**
+     * Adds a proto file. All known files, imported by it, should have already been added.
+     *
+     * @param arg A proto file.
+     */
+    void add(final ProtoProcessorArgs arg)
+    {
+        final Set<ProtoProcessorArgs> imported = new LinkedHashSet<>();
+        for (final String importPath : arg.parse.imports())
+        {
+            final Path path = get(importPath);
+
+            if (isKnown(path) && !argsByPath.containsKey(path))
+                throw new RuntimeException(arg + " imports '" + path + "', which hasn't been added yet");
+
+            imported.addAll(argsByPath.getOrDefault(path, emptyList()));
+        }
+
+        // Keep the order, in which proto files were given, so the generated includes are stable
+        final List<ProtoProcessorArgs> sortedImports = new ArrayList<>(imported);
+        sortedImports.sort(comparingInt((ProtoProcessorArgs i) -> pathIndices.get(i.pathToProto))
+            .thenComparingInt(indices::get));
+
+        final Set<ProtoProcessorArgs> closure = new LinkedHashSet<>();
+        closure.add(arg);
+
+        for (final ProtoProcessorArgs i : sortedImports)
+            closure.addAll(closures.get(i));
+
+        argsByPath.computeIfAbsent(arg.pathToProto, p -> new ArrayList<>(1)).add(arg);
+        indices.put(arg, indices.size());
+
+        imports.put(arg, unmodifiableList(sortedImports));
+        closures.put(arg, unmodifiableList(new ArrayList<>(closure)));
+    }
+
+    /**
+     * Returns proto files, directly imported by the given one.
+     *
+     * @param arg A proto file.
+     * @return Directly imported proto files.
+     */
+    List<ProtoProcessorArgs> getImports(final ProtoProcessorArgs arg)
+    {
+        return lookup(imports, arg);
+    }
+
+    /**
+     * Returns the given proto file, followed by all proto files it imports, directly or transitively.
+     *
+     * @param arg A proto file.
+     * @return The import closure of the proto file.
+     */
+    List<ProtoProcessorArgs> getClosure(final ProtoProcessorArgs arg)
+    {
+        return lookup(closures, arg);
+    }
+
+    private static List<ProtoProcessorArgs> lookup(final Map<ProtoProcessorArgs, List<ProtoProcessorArgs>> map,
+                                                   final ProtoProcessorArgs arg)
+    {
+        final List<ProtoProcessorArgs> found = map.get(arg);
+        if (found == null)
+            throw new RuntimeException(arg + " isn't a part of the import graph");
+
+        return found;
+    }
+}
@@ -44,14 +44,15 @@ import com.vizor.unreal.util.MessageOrderResolver;
 import com.vizor.unreal.util.Tuple;
 import com.vizor.unreal.writer.CppPrinter;
 import com.vizor.unreal.writer.CppPrinter.HeaderType;
+import com.vizor.unreal.writer.GeneratedFile;
 
 import org.apache.logging.log4j.Logger;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.print.DocFlavor.STRING;
 
@@ -63,7 +64,6 @@ import static com.vizor.unreal.tree.CppAnnotation.Transient;
 import static com.vizor.unreal.tree.CppAnnotation.Category;
 import static com.vizor.unreal.tree.CppRecord.Residence.Cpp;
 import static com.vizor.unreal.tree.CppRecord.Residence.Header;
-import static com.vizor.unreal.tree.CppType.Kind.Enum;
 import static com.vizor.unreal.tree.CppType.Kind.Struct;
 import static com.vizor.unreal.tree.CppType.plain;
 import static com.vizor.unreal.util.Misc.reorder;
@@ -83,9 +83,10 @@ import static org.apache.logging.log4j.LogManager.getLogger;
 class ProtoProcessorArgs
 {
     ProtoProcessorArgs(final ProtoFileElement parse, final Path pathToProto,
-    final DestinationConfig pathToConverted2, final String moduleName)
+    final DestinationConfig pathToConverted2, final String moduleName, final String sourceHash)
     {
         this.parse = requireNonNull(parse);
+        this.sourceHash = requireNonNull(sourceHash);
         this.pathToProto = requireNonNull(pathToProto);
         this.pathToConverted = requireNonNull(pathToConverted2);
         this.moduleName = requireNonNull(moduleName);
@@ -100,83 +101,87 @@ class ProtoProcessorArgs
         this.packageNamespace = new CppNamespace(parse.packageName());
     }
 
-    final ProtoFileElement parse;
+    /**
+     * Parse tree of the proto file. Null once released, after which only names and paths below remain, along with
+     * whatever has been taken from the tree (types in the {@link SchemaSymbols}, imports in the {@link ImportGraph}).
+     */
+    ProtoFileElement parse;
+
     final Path pathToProto;
     final DestinationConfig pathToConverted;
     final String moduleName;
 
+    /** A hash of the proto file's source code, used to detect changes between runs */
+    final String sourceHash;
+
     final String wrapperName;
 
     final String className;
     final CppNamespace packageNamespace;
+
+    /**
+     * Drops the parse tree, once nothing is going to be generated out of it anymore.
+     */
+    void release()
+    {
+        parse = null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return pathToProto.toString();
+    }
 }
 
 class ProtoProcessor implements Runnable
 {
     private static final Logger log = getLogger(ProtoProcessor.class);
-    private final Config config = Config.get();
+    private final Config config;
 
     private final ProtoProcessorArgs args;
 
     private final TypesProvider ueProvider = new UnrealTypesProvider();
     private final TypesProvider protoProvider = new ProtoTypesProvider();
 
-    private final List<ProtoProcessorArgs> otherProcessorArgs;
+    private final ImportGraph importGraph;
+    private final SchemaSymbols symbols;
+
+    private final ConversionProfile profile;
+    private final Consumer<GeneratedFile> output;
 
     // to avoid any confusion when converting code on Windows,
     // force part separator to be forward slash
     private static final String pathSeparator = "/";
 
-    ProtoProcessor(ProtoProcessorArgs args, List<ProtoProcessorArgs> otherProcessorArgs) {
+    ProtoProcessor(ProtoProcessorArgs args, ImportGraph importGraph, SchemaSymbols symbols, Config config,
+                   ConversionProfile profile, Consumer<GeneratedFile> output) {
         this.args = args;
-        this.otherProcessorArgs = otherProcessorArgs;
+        this.config = requireNonNull(config);
+        this.importGraph = requireNonNull(importGraph);
+        this.symbols = requireNonNull(symbols);
+        this.profile = requireNonNull(profile);
+        this.output = requireNonNull(output);
     }
     
-    private Stream<ProtoProcessorArgs> GatherImportedProtos(final ProtoProcessorArgs proto, final List<ProtoProcessorArgs> otherProtos)
-    {
-        return otherProtos.stream()
-            .filter(otherProto -> proto.parse.imports().stream().map(importPathString -> get(importPathString)).anyMatch(importPath -> importPath.equals(otherProto.pathToProto)));
-    }
-
-    private Stream<ProtoProcessorArgs> GatherImportedProtosDeep(final ProtoProcessorArgs proto, final List<ProtoProcessorArgs> otherProtos)
-    {
-        final Stream<ProtoProcessorArgs> importedProtos = GatherImportedProtos(proto, otherProtos);
-        
-        final List<ProtoProcessorArgs> argss = importedProtos.collect(Collectors.toList());
-
-        return Stream.concat(Stream.of(proto), argss.stream().flatMap(importedProto->GatherImportedProtosDeep(importedProto, otherProtos))).distinct();
-    }
-
-    private void GatherTypes(final ProtoProcessorArgs proto, final List<ProtoProcessorArgs> otherProtos, TypesProvider ueProvider, TypesProvider protoProvider)
-    {
-        final Stream<ProtoProcessorArgs> importedProtos = GatherImportedProtosDeep(proto, otherProtos);
-
-        importedProtos.forEach(
-            importedProto -> importedProto.parse.types().forEach(
-                typeElement ->
-                {
-                    final String fullTypeName = importedProto.parse.packageName() + "." + typeElement.name();
-
-                    ueProvider.register(fullTypeName, ueNamedType(importedProto.className, typeElement));
-                    protoProvider.register(fullTypeName, cppNamedType(importedProto.packageNamespace, typeElement));
-                }
-            )
-        );
-    }
-
     @Override
     public void run()
     {
         final List<ServiceElement> services = args.parse.services();
 
-        GatherTypes(args, otherProcessorArgs, ueProvider, protoProvider);
-        
+        // Only types of this proto file and the ones it imports are visible
+        final List<ProtoProcessorArgs> visibleProtos = importGraph.getClosure(args);
+
+        ueProvider.setScope(symbols.unreal.scope(visibleProtos));
+        protoProvider.setScope(symbols.proto.scope(visibleProtos));
 
         final List<Tuple<CppStruct, CppStruct>> castAssociations = new ArrayList<>();
         final List<CppStruct> unrealStructures = new ArrayList<>();
 
         final List<CppEnum> ueEnums = new ArrayList<>();
 
+        ConversionProfile.Sample start = profile.start();
+
         // At this moment, we have all types registered in both type providers
         for (final TypeElement s : args.parse.types())
         {
@@ -191,10 +196,14 @@ class ProtoProcessor implements Runnable
 
                 castAssociations.add(of(protoStruct, ueStruct));
                 unrealStructures.add(ueStruct);
+
+                profile.count("messages", args.pathToProto, 1);
+                profile.count("fields", args.pathToProto, messageElement.fields().size());
             }
             else if (s instanceof EnumElement)
             {
                 ueEnums.add(extractEnum(ueProvider, (EnumElement) s));
+                profile.count("enums", args.pathToProto, 1);
             }
             else
             {
@@ -202,7 +211,10 @@ class ProtoProcessor implements Runnable
             }
         }
 
+        profile.record(start, "extract", args.pathToProto);
+
         // Topologically sort structures
+        start = profile.start();
         final MessageOrderResolver resolver = new MessageOrderResolver();
         
         {
@@ -213,14 +225,23 @@ class ProtoProcessor implements Runnable
 	        reorder(castAssociations, indices);
         }
 
+        profile.record(start, "orderMessages", args.pathToProto);
+
+        start = profile.start();
         final CppNamespace casts = new CastGenerator().genCasts(castAssociations);
-        
+        profile.record(start, "casts", args.pathToProto);
+
         // consolidate structs to parent structs
+        start = profile.start();
         consolidateStructs(ueProvider, unrealStructures);
+        profile.record(start, "consolidateStructs", args.pathToProto);
+
         {
         	// reorder one more time with the consolidated structs
+        	start = profile.start();
         	final int[] indices = resolver.sortByInclusion(unrealStructures);
         	reorder(unrealStructures, indices);
+        	profile.record(start, "orderMessages", args.pathToProto);
         }
 
         log.debug("Found structures (sorted): {}", () ->
@@ -228,6 +249,9 @@ class ProtoProcessor implements Runnable
         ));
 
         // Generate RPC workers
+        start = profile.start();
+        profile.count("services", args.pathToProto, services.size());
+
         final WorkerGenerator workerGenerator = (config.isServer())? 
         										new ServerWorkerGenerator(services, ueProvider, args.parse):
         										new ClientWorkerGenerator(services, ueProvider, args.parse);
@@ -245,22 +269,18 @@ class ProtoProcessor implements Runnable
 
             // Get class code generator for server or client
             final CodeGenerator cg = (config.isServer())? 
-            						  new ServerGenerator(service, ueProvider, worker.getType()): 
-            						  new ClientGenerator(service, ueProvider, worker.getType());
+            						  new ServerGenerator(service, ueProvider, worker.getType(), config): 
+            						  new ClientGenerator(service, ueProvider, worker.getType(), config);
             
             classes.add(cg.genClass());
             dispatchers.addAll(cg.getDelegates());
         }
 
-        final String pathToProtoStr = removeExtension(args.pathToProto.getFileName().toString());
-        DestinationConfig dstPath = Config.get().getDstPath();
+        profile.record(start, "services", args.pathToProto);
+        start = profile.start();
 
-        // Should create an output directories if does not exit.
-        @SuppressWarnings("unused")
-        final boolean ignorePublic = dstPath.pathPublic.toFile().mkdirs();
-        
-        @SuppressWarnings("unused")
-        final boolean ignorePrivate = dstPath.pathPrivate.toFile().mkdirs();
+        final String pathToProtoStr = removeExtension(args.pathToProto.getFileName().toString());
+        DestinationConfig dstPath = config.getDstPath();
 
         final List<CppInclude> headerIncludes = new ArrayList<>(asList(
             // header
@@ -277,7 +297,7 @@ class ProtoProcessor implements Runnable
             headerIncludes.add(new CppInclude(Header, "Misc/TVariant.h"));
         }
 
-        final List<String> importedProtoNames = GatherImportedProtos(args, otherProcessorArgs).map(
+        final List<String> importedProtoNames = importGraph.getImports(args).stream().map(
             importedProto -> {
                 return getHeaderPath(importedProto);
             }
@@ -292,8 +312,6 @@ class ProtoProcessor implements Runnable
             );
         }
         
-        final Config config = Config.get();
-
         final String publicIncludePath = config.getIncludePath();
         
         // TODO: Fix paths
@@ -348,10 +366,10 @@ class ProtoProcessor implements Runnable
         if (!stringIsNullOrEmpty(config.getPrecompiledHeader()))
             cppIncludes.add(0, new CppInclude(Cpp, config.getPrecompiledHeader(), false));
 
-        final DestinationConfig outFilePath = dstPath.append(args.className);
-        final DestinationConfig outCastsFilePath = dstPath.append(args.className + "Casts");
+        final DestinationConfig outFilePath = getOutFilePath(args, dstPath);
+        final DestinationConfig outCastsFilePath = getOutCastsFilePath(args, dstPath);
         
-        try (final CppPrinter castsPrinter = new CppPrinter(outCastsFilePath, args.moduleName.toUpperCase(), HeaderType.Public))
+        try (final CppPrinter castsPrinter = new CppPrinter(config, outCastsFilePath, args.moduleName.toUpperCase(), HeaderType.Public, output))
         {
             castsIncludes.forEach(i -> i.accept(castsPrinter));
             castsPrinter.newLine();
@@ -360,7 +378,7 @@ class ProtoProcessor implements Runnable
             casts.accept(castsPrinter).newLine();
         }
 
-        try (final CppPrinter p = new CppPrinter(outFilePath, args.moduleName.toUpperCase()))
+        try (final CppPrinter p = new CppPrinter(config, outFilePath, args.moduleName.toUpperCase(), output))
         {
             headerIncludes.forEach(i -> i.accept(p));
             p.newLine();
@@ -399,6 +417,38 @@ class ProtoProcessor implements Runnable
 
             classes.forEach(w -> w.accept(p).newLine());
         }
+
+        profile.record(start, "print", args.pathToProto);
+    }
+
+    private static DestinationConfig getOutFilePath(final ProtoProcessorArgs args, final DestinationConfig dstPath)
+    {
+        return dstPath.append(args.className);
+    }
+
+    private static DestinationConfig getOutCastsFilePath(final ProtoProcessorArgs args, final DestinationConfig dstPath)
+    {
+        return dstPath.append(args.className + "Casts");
+    }
+
+    /**
+     * Lists all files, which are written while processing a proto file.
+     *
+     * @param args Arguments of the processed proto file.
+     * @param dstPath Destination, where the generated files are placed.
+     * @return Paths to all files, generated out of the proto file.
+     */
+    static List<Path> getOutputPaths(final ProtoProcessorArgs args, final DestinationConfig dstPath)
+    {
+        final DestinationConfig outFilePath = getOutFilePath(args, dstPath);
+        final DestinationConfig outCastsFilePath = getOutCastsFilePath(args, dstPath);
+
+        return asList(
+            CppPrinter.getHeaderPath(outFilePath, HeaderType.Public),
+            CppPrinter.getCodePath(outFilePath),
+            CppPrinter.getHeaderPath(outCastsFilePath, HeaderType.Public),
+            CppPrinter.getCodePath(outCastsFilePath)
+        );
     }
 
     private static String getHeaderPath(final ProtoProcessorArgs args)
@@ -500,48 +550,6 @@ class ProtoProcessor implements Runnable
         return cppEnum;
     }
 
-    private CppType ueNamedType(final String serviceName, final TypeElement el)
-    {
-        if (el instanceof MessageElement)
-            return plain("F" + serviceName + "_" + el.name(), Struct);
-        else if (el instanceof EnumElement)
-            return plain("E" + serviceName + "_" + el.name(), Enum);
-        else
-            throw new RuntimeException("Unknown type: '" + el.getClass().getName() + "'");
-    }
-
-
-
-    private static CppType cppNamedType(CppNamespace packageNamespace, TypeElement el) {
-        if (el instanceof MessageElement)
-        {
-            final CppType mt = plain(el.name(), Struct);
-
-            if (packageNamespace.hasName())
-                mt.setNamespaces(packageNamespace);
-
-            return mt;
-        }
-        else if (el instanceof EnumElement)
-        {
-            final CppType et = plain(el.name(), Enum);
-
-            if (packageNamespace.hasName())
-                et.setNamespaces(packageNamespace);
-
-            return et;
-        }
-        else
-        {
-            throw new RuntimeException("Unknown type: '" + el.getClass().getName() + "'");
-        }
-    }
-
-    private CppType cppNamedType(final TypeElement el)
-    {
-        return cppNamedType(args.packageNamespace, el);
-    }
-
     private boolean isHaveVariantField(List<CppStruct> unrealStructures)
     {
         for (CppStruct unrealStructure : unrealStructures)
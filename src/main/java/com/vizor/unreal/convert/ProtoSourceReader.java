@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+
+import static java.nio.charset.CodingErrorAction.REPORT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads proto source files into strings, ready to be parsed.
+ *
+ * Files are read through a {@link FileChannel} into a buffer, which is reused by subsequent reads of the same thread,
+ * and decoded as UTF-8 right into a reusable char buffer. Large files get buffers of their own, so readers don't keep
+ * huge buffers alive. Files are never memory-mapped, since a mapped file stays locked on Windows until the mapping is
+ * garbage collected, which would prevent editors from saving it in watch mode.
+ *
+ * A byte order mark is dropped, and line breaks ('\r\n' and single '\r') are normalized to '\n', so line numbers,
+ * reported by the parser, are the same on every platform.
+ *
+ * Instances are not thread-safe, use one reader per thread (see {@link #forCurrentThread()}).
+ */
+final class ProtoSourceReader
+{
+    /** Files larger than that are read into buffers of their own, rather than into the reusable ones */
+    private static final int reuseThreshold = 1 << 20;
+
+    private static final int initialBufferSize = 1 << 14;
+
+    private static final char byteOrderMark = '\uFEFF';
+
+    private static final ThreadLocal<ProtoSourceReader> readers = ThreadLocal.withInitial(ProtoSourceReader::new);
+
+    private final CharsetDecoder decoder = UTF_8.newDecoder()
+        .onMalformedInput(REPORT)
+        .onUnmappableCharacter(REPORT);
+
+    private ByteBuffer bytes = ByteBuffer.allocate(initialBufferSize);
+    private CharBuffer chars = CharBuffer.allocate(initialBufferSize);
+
+    /**
+     * @return A reader of the current thread, so the thread's reads share buffers.
+     */
+    static ProtoSourceReader forCurrentThread()
+    {
+        return readers.get();
+    }
+
+    /**
+     * Reads a proto source file.
+     *
+     * @param path Path to the file.
+     * @return Content of the file without a byte order mark, and with line breaks normalized to '\n'.
+     * @throws IOException if the file can't be read, or isn't a valid UTF-8 text.
+     */
+    String read(final Path path) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(path, READ))
+        {
+            final long size = channel.size();
+            if (size >= Integer.MAX_VALUE)
+                throw new IOException("'" + path + "' is too large to be a proto file");
+
+            final boolean reuse = size <= reuseThreshold;
+
+            // One more byte lets the read loop detect the end of the file without growing the buffer
+            ByteBuffer source = reuse ? ensureCapacity(bytes, (int) size) : ByteBuffer.allocate((int) size + 1);
+            source.clear();
+
+            // The size is just a hint, the file might be changing while being read
+            while (channel.read(source) > 0)
+            {
+                if (!source.hasRemaining())
+                    source = grow(source);
+            }
+
+            if (reuse)
+                bytes = source;
+
+            source.flip();
+            return decode(source, reuse);
+        }
+    }
+
+    private String decode(final ByteBuffer source, final boolean reuse) throws CharacterCodingException
+    {
+        // UTF-8 never takes less than a byte per char
+        CharBuffer target = chars;
+        if (!reuse || target.capacity() < source.remaining())
+            target = CharBuffer.allocate(source.remaining());
+
+        if (reuse)
+            chars = target;
+
+        target.clear();
+        decoder.reset();
+
+        CoderResult result = decoder.decode(source, target, true);
+        if (result.isUnderflow())
+            result = decoder.flush(target);
+
+        if (!result.isUnderflow())
+            result.throwException();
+
+        target.flip();
+        return normalize(target);
+    }
+
+    private static String normalize(final CharBuffer chars)
+    {
+        final char[] array = chars.array();
+        final int length = chars.limit();
+
+        int from = (length > 0 && array[0] == byteOrderMark) ? 1 : 0;
+        int to = 0;
+
+        // Compacting in-place is safe, because the output never outruns the input
+        for (; from < length; from++)
+        {
+            final char c = array[from];
+
+            if (c == '\r')
+            {
+                array[to++] = '\n';
+
+                if (from + 1 < length && array[from + 1] == '\n')
+                    from++;
+            }
+            else
+            {
+                array[to++] = c;
+            }
+        }
+
+        return new String(array, 0, to);
+    }
+
+    private static ByteBuffer ensureCapacity(final ByteBuffer buffer, final int capacity)
+    {
+        // One more byte lets the read loop detect the end of the file without growing the buffer
+        return (buffer.capacity() > capacity) ? buffer : ByteBuffer.allocate(capacity + 1);
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buffer)
+    {
+        final ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
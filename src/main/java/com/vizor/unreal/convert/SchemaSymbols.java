@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.squareup.wire.schema.internal.parser.EnumElement;
+import com.squareup.wire.schema.internal.parser.MessageElement;
+import com.squareup.wire.schema.internal.parser.TypeElement;
+import com.vizor.unreal.provider.SymbolTable;
+import com.vizor.unreal.tree.CppNamespace;
+import com.vizor.unreal.tree.CppType;
+
+import static com.vizor.unreal.tree.CppType.Kind.Enum;
+import static com.vizor.unreal.tree.CppType.Kind.Struct;
+import static com.vizor.unreal.tree.CppType.plain;
+
+/**
+ * Unreal and proto (C++) names of all messages and enums of the schema. Filled as soon as proto files are parsed,
+ * and shared by all {@link ProtoProcessor}s, each of them only seeing types, declared in its own proto file and the
+ * files it imports.
+ */
+final class SchemaSymbols
+{
+    final SymbolTable unreal = new SymbolTable();
+    final SymbolTable proto = new SymbolTable();
+
+    /**
+     * Registers all types of a proto file. Should be called from a single thread, before any scope including the
+     * proto file has been created.
+     *
+     * @param arg A parsed proto file.
+     */
+    void register(final ProtoProcessorArgs arg)
+    {
+        for (final TypeElement typeElement : arg.parse.types())
+        {
+            final String fullTypeName = arg.parse.packageName() + "." + typeElement.name();
+
+            unreal.register(arg, fullTypeName, ueNamedType(arg.className, typeElement));
+            proto.register(arg, fullTypeName, cppNamedType(arg.packageNamespace, typeElement));
+        }
+    }
+
+    private static CppType ueNamedType(final String serviceName, final TypeElement el)
+    {
+        if (el instanceof MessageElement)
+            return plain("F" + serviceName + "_" + el.name(), Struct);
+        else if (el instanceof EnumElement)
+            return plain("E" + serviceName + "_" + el.name(), Enum);
+        else
+            throw new RuntimeException("Unknown type: '" + el.getClass().getName() + "'");
+    }
+
+    private static CppType cppNamedType(final CppNamespace packageNamespace, final TypeElement el)
+    {
+        final CppType type;
+
+        if (el instanceof MessageElement)
+            type = plain(el.name(), Struct);
+        else if (el instanceof EnumElement)
+            type = plain(el.name(), Enum);
+        else
+            throw new RuntimeException("Unknown type: '" + el.getClass().getName() + "'");
+
+        if (packageNamespace.hasName())
+            type.setNamespaces(packageNamespace);
+
+        return type;
+    }
+}
@@ -17,6 +17,7 @@ import java.util.stream.Stream;
 
 import com.squareup.wire.schema.internal.parser.RpcElement;
 import com.squareup.wire.schema.internal.parser.ServiceElement;
+import com.vizor.unreal.config.Config;
 import com.vizor.unreal.provider.TypesProvider;
 import com.vizor.unreal.tree.CppClass;
 import com.vizor.unreal.tree.CppDelegate;
@@ -28,9 +29,10 @@ import com.vizor.unreal.util.Tuple;
 public class ServerGenerator extends CodeGenerator
 {	
 	 
-	 ServerGenerator(final ServiceElement service, final TypesProvider provider, final CppType workerType) 
+	 ServerGenerator(final ServiceElement service, final TypesProvider provider, final CppType workerType,
+	                 final Config config) 
 	 {
-		 super(service, provider, workerType);
+		 super(service, provider, workerType, config);
 		 conduits = genConduits(reqWithTag, rspWithTag);
 	 }
 	 
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.util.Shard;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.Objects.nonNull;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Splits proto files into shards, so several processes (or machines) may convert disjoint parts of the same set.
+ *
+ * Every process computes the same split on its own, so it must only depend on things, which are the same everywhere:
+ * relative paths and content of the proto files. Files are weighted by their estimated conversion cost and assigned
+ * one by one, the most expensive first, to the shard, which has the least total cost so far.
+ *
+ * The cost of a proto file is estimated by counting statements and blocks (fields, options, messages, enums, etc.)
+ * without parsing it. Unlike file size, that doesn't depend on line breaks, which might differ between checkouts.
+ */
+final class ShardPlanner
+{
+    private static final Logger log = getLogger(ShardPlanner.class);
+
+    private ShardPlanner()
+    {
+    }
+
+    /**
+     * Picks proto files of a shard.
+     *
+     * @param srcPath Root folder of all proto files.
+     * @param paths Paths to all proto files.
+     * @param shard A shard to pick files of.
+     * @param scheduler Scheduler, reading the proto files.
+     * @return Paths to proto files of the shard, relative to the root folder.
+     */
+    static Set<Path> plan(final Path srcPath, final List<Path> paths, final Shard shard,
+                          final GenerationScheduler scheduler)
+    {
+        final long[] fileCosts = estimateCosts(paths, scheduler);
+        final List<Weighted> files = new ArrayList<>(paths.size());
+
+        for (int i = 0; i < paths.size(); i++)
+            files.add(new Weighted(srcPath.relativize(paths.get(i)), fileCosts[i]));
+
+        // Paths are compared the same way on every platform, so ties are broken the same way everywhere
+        files.sort(comparingLong((Weighted w) -> -w.cost).thenComparing(w -> w.key));
+
+        final long[] costs = new long[shard.getCount()];
+        final Set<Path> picked = new HashSet<>();
+
+        for (final Weighted file : files)
+        {
+            int cheapest = 0;
+            for (int i = 1; i < costs.length; i++)
+            {
+                if (costs[i] < costs[cheapest])
+                    cheapest = i;
+            }
+
+            costs[cheapest] += file.cost;
+
+            if (cheapest == shard.getIndex() - 1)
+                picked.add(file.path);
+        }
+
+        final long total = files.stream().mapToLong(f -> f.cost).sum();
+        log.info("Shard {} has {} of {} proto-files, estimated cost is {} of {}", shard, picked.size(), files.size(),
+                costs[shard.getIndex() - 1], total);
+
+        return picked;
+    }
+
+    /**
+     * Reads all proto files on the scheduler's threads and estimates their costs.
+     *
+     * @param paths Paths to all proto files.
+     * @param scheduler Scheduler, reading the proto files.
+     * @return Estimated costs, in the same order as paths.
+     */
+    private static long[] estimateCosts(final List<Path> paths, final GenerationScheduler scheduler)
+    {
+        final long[] costs = new long[paths.size()];
+        final CountDownLatch done = new CountDownLatch(paths.size());
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        for (int i = 0; i < paths.size(); i++)
+        {
+            final int index = i;
+            final Path path = paths.get(i);
+
+            scheduler.execute(() -> {
+                try
+                {
+                    costs[index] = estimateCost(ProtoSourceReader.forCurrentThread().read(path));
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    failure.compareAndSet(null, new RuntimeException("Unable to read '" + path + "': " +
+                            e.getMessage(), e));
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            });
+        }
+
+        try
+        {
+            done.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading proto files", e);
+        }
+
+        if (nonNull(failure.get()))
+            throw failure.get();
+
+        return costs;
+    }
+
+    /**
+     * Estimates how expensive conversion of a proto file is.
+     *
+     * @param source Source of the proto file.
+     * @return Estimated cost, always positive.
+     */
+    static long estimateCost(final String source)
+    {
+        long cost = 1;
+
+        for (int i = 0; i < source.length(); i++)
+        {
+            final char c = source.charAt(i);
+            if (c == ';' || c == '{')
+                cost++;
+        }
+
+        return cost;
+    }
+
+    private static final class Weighted
+    {
+        private final Path path;
+        private final String key;
+        private final long cost;
+
+        private Weighted(final Path path, final long cost)
+        {
+            this.path = path;
+            this.key = path.toString().replace('\\', '/');
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.writer.GeneratedFile;
+import com.vizor.unreal.writer.OutputSink;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.Paths.get;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * The last stage of the conversion pipeline: writes generated files on a small pool of dedicated I/O threads, so
+ * generating threads never wait for the file system (which might be slow, e.g. a network share). Files are passed
+ * through a bounded queue, thus generating threads block once the writers fall behind, rather than piling up
+ * generated content in memory.
+ *
+ * Writes don't flush files to the storage device one by one. If requested, all written files are flushed once, after
+ * everything has been written.
+ *
+ * A failed write is re-thrown to the next generating thread, trying to pass a file, and by {@link #finish()}.
+ */
+final class WriteStage implements AutoCloseable
+{
+    private static final Logger log = getLogger(WriteStage.class);
+
+    private static final long offerTimeoutMillis = 100;
+
+    /** Tells a writer thread, that no more files are coming */
+    private static final Pending endOfFiles = new Pending(new GeneratedFile(get(""), new byte[0]), null);
+
+    private final OutputSink sink;
+    private final BlockingQueue<Pending> queue;
+    private final List<Thread> threads;
+    private final boolean sync;
+    private final ConversionProfile profile;
+
+    private volatile Throwable failure = null;
+    private volatile boolean aborted = false;
+
+    private final AtomicInteger numWritten = new AtomicInteger();
+    private final AtomicInteger numSkipped = new AtomicInteger();
+
+    /**
+     * Starts the writer threads.
+     *
+     * @param sink A sink to write files into.
+     * @param numThreads How many threads write files.
+     * @param capacity How many generated files may wait for being written.
+     * @param sync True to flush all written files to the storage device once everything has been written.
+     * @param profile A profile to record timings into.
+     */
+    WriteStage(final OutputSink sink, final int numThreads, final int capacity, final boolean sync,
+               final ConversionProfile profile)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("numThreads must be positive, got " + numThreads + " instead");
+
+        this.sink = requireNonNull(sink);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.threads = new ArrayList<>(numThreads);
+        this.sync = sync;
+        this.profile = requireNonNull(profile);
+
+        for (int i = 0; i < numThreads; i++)
+        {
+            final Thread thread = new Thread(this::writeAll, "cornerstone-writer-" + (i + 1));
+
+            // Don't prevent the JVM from exiting if the stage wasn't closed
+            thread.setDaemon(true);
+            thread.start();
+
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Passes a file to the writer threads. Blocks while the queue is full.
+     *
+     * @param file A file to be written.
+     * @param proto A relative path to the proto file, the file has been generated from.
+     * @throws RuntimeException if some file has failed to be written, or the stage has been closed.
+     */
+    void accept(final GeneratedFile file, final Path proto)
+    {
+        accept(new Pending(file, proto));
+    }
+
+    private void accept(final Pending pending)
+    {
+        try
+        {
+            do
+            {
+                rethrowFailure();
+
+                if (aborted)
+                    throw new RuntimeException("Writing of generated files has been aborted");
+            }
+            while (!queue.offer(pending, offerTimeoutMillis, MILLISECONDS));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + pending.file + " to be written", e);
+        }
+    }
+
+    /**
+     * Waits until all passed files have been written (and flushed, if requested).
+     *
+     * @throws RuntimeException if any file has failed to be written.
+     */
+    void finish()
+    {
+        for (int i = 0; i < threads.size(); i++)
+            accept(endOfFiles);
+
+        try
+        {
+            for (final Thread thread : threads)
+                thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for generated files to be written", e);
+        }
+
+        rethrowFailure();
+        log.debug("{} generated file(s) written, {} up to date", numWritten.get(), numSkipped.get());
+    }
+
+    /**
+     * Stops the writer threads, if {@link #finish()} hasn't been called (or has failed). Files, which are still
+     * queued, won't be written.
+     */
+    @Override
+    public void close()
+    {
+        aborted = true;
+        threads.forEach(Thread::interrupt);
+
+        try
+        {
+            for (final Thread thread : threads)
+                thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeAll()
+    {
+        // Only paths are kept, so contents of written files don't stay in memory till the end of the run
+        final List<Path> written = new ArrayList<>();
+
+        try
+        {
+            for (Pending pending = queue.take(); pending != endOfFiles; pending = queue.take())
+            {
+                // Keep draining the queue after a failure, so nobody blocks on a full queue
+                if (failure != null)
+                    continue;
+
+                final GeneratedFile file = pending.file;
+                final ConversionProfile.Sample start = profile.start();
+
+                try
+                {
+                    if (sink.write(file))
+                    {
+                        if (sync)
+                            written.add(file.getPath());
+
+                        numWritten.incrementAndGet();
+
+                        profile.count("outputsWritten", null, 1);
+                        profile.count("bytesWritten", pending.proto, file.getContent().length);
+                    }
+                    else
+                    {
+                        numSkipped.incrementAndGet();
+                        log.debug("{} is up to date, skipped", file);
+
+                        profile.count("outputsUpToDate", null, 1);
+                    }
+
+                    profile.record(start, "write", pending.proto);
+                }
+                catch (Throwable t)
+                {
+                    failure = new RuntimeException("Unable to write " + file + ": " + t.getMessage(), t);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            log.debug("Writer thread has been interrupted, {} generated file(s) left unwritten", queue.size());
+            return;
+        }
+
+        if (sync && failure == null)
+            syncAll(written);
+    }
+
+    private void syncAll(final List<Path> written)
+    {
+        final ConversionProfile.Sample start = profile.start();
+
+        try
+        {
+            written.forEach(sink::sync);
+            profile.record(start, "sync", null);
+        }
+        catch (Throwable t)
+        {
+            failure = new RuntimeException("Unable to flush generated files: " + t.getMessage(), t);
+        }
+    }
+
+    private void rethrowFailure()
+    {
+        final Throwable t = failure;
+        if (t != null)
+            throw (t instanceof RuntimeException) ? (RuntimeException) t : new RuntimeException(t);
+    }
+
+    private static final class Pending
+    {
+        private final GeneratedFile file;
+        private final Path proto;
+
+        private Pending(final GeneratedFile file, final Path proto)
+        {
+            this.file = file;
+            this.proto = proto;
+        }
+    }
+}
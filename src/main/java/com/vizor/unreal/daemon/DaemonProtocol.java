@@ -0,0 +1,248 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.vizor.unreal.util.Misc.stringIsNullOrEmpty;
+import static java.lang.System.getProperty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.FileSystems.getDefault;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.newByteChannel;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Paths.get;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.attribute.PosixFilePermissions.asFileAttribute;
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static java.util.Base64.getUrlEncoder;
+import static java.util.Objects.isNull;
+
+/**
+ * A wire format, used by the daemon and its clients. A client sends a request and the daemon replies with a response,
+ * each connection carries exactly one request:
+ * <pre>
+ * request:  magic (int), version (int), token (utf), working directory (utf), config path (utf, empty if none),
+ *           number of args (int), args (utf each)
+ * response: exit code (int), message (utf)
+ * </pre>
+ *
+ * The daemon writes files with its owner's permissions, wherever a request asks, so it only serves requests bearing
+ * its owner's token. The token is a random secret, kept in a file only the owner can read (see {@link #getTokenPath()}).
+ */
+final class DaemonProtocol
+{
+    private static final int magic = 0x43535444;
+    private static final int version = 2;
+
+    /** Number of random bytes in a token */
+    private static final int tokenLength = 32;
+
+    static final int exitSuccess = 0;
+    static final int exitFailure = 1;
+
+    static final class Request
+    {
+        final String workingDir;
+        final String configPath;
+        final String[] args;
+
+        Request(final String workingDir, final String configPath, final String[] args)
+        {
+            this.workingDir = workingDir;
+            this.configPath = configPath;
+            this.args = args;
+        }
+    }
+
+    static final class Response
+    {
+        final int exitCode;
+        final String message;
+
+        Response(final int exitCode, final String message)
+        {
+            this.exitCode = exitCode;
+            this.message = message;
+        }
+    }
+
+    private DaemonProtocol()
+    {
+    }
+
+    /**
+     * Tells where the token of the current user is kept. The file is only readable by its owner (on POSIX file
+     * systems, elsewhere it inherits the access rules of the user's home folder).
+     *
+     * @return Path to the token file in the user's home folder.
+     */
+    static Path getTokenPath()
+    {
+        return get(getProperty("user.home"), ".cornerstone", "daemon.token");
+    }
+
+    /**
+     * Reads the token of the current user.
+     *
+     * @return The token, or null if no daemon has created it yet.
+     * @throws IOException if the token file exists, but can't be read.
+     */
+    static String readToken() throws IOException
+    {
+        try
+        {
+            return new String(readAllBytes(getTokenPath()), UTF_8).trim();
+        }
+        catch (NoSuchFileException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the token of the current user, creating a new random one if there is none yet.
+     *
+     * @return The token.
+     * @throws IOException if the token file can't be read or created.
+     */
+    static String getOrCreateToken() throws IOException
+    {
+        final Path path = getTokenPath();
+
+        String token = readToken();
+        if (isNull(token))
+        {
+            final byte[] secret = new byte[tokenLength];
+            new SecureRandom().nextBytes(secret);
+
+            token = getUrlEncoder().withoutPadding().encodeToString(secret);
+
+            try
+            {
+                writeOwnerOnly(path, token);
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                // Another daemon has just created it
+                token = readToken();
+            }
+        }
+
+        if (stringIsNullOrEmpty(token))
+            throw new IOException("Token file '" + path + "' is empty, delete it to create a new token");
+
+        return token;
+    }
+
+    private static void writeOwnerOnly(final Path path, final String content) throws IOException
+    {
+        final boolean posix = getDefault().supportedFileAttributeViews().contains("posix");
+        final Set<StandardOpenOption> options = EnumSet.of(CREATE_NEW, WRITE);
+
+        final FileAttribute<?>[] folderAttributes = posix ?
+                new FileAttribute<?>[] { asFileAttribute(fromString("rwx------")) } : new FileAttribute<?>[0];
+        final FileAttribute<?>[] fileAttributes = posix ?
+                new FileAttribute<?>[] { asFileAttribute(fromString("rw-------")) } : new FileAttribute<?>[0];
+
+        createDirectories(path.getParent(), folderAttributes);
+
+        try (final SeekableByteChannel channel = newByteChannel(path, options, fileAttributes))
+        {
+            channel.write(ByteBuffer.wrap(content.getBytes(UTF_8)));
+        }
+    }
+
+    static void writeRequest(final DataOutputStream out, final String token, final Request request) throws IOException
+    {
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeUTF(token);
+        out.writeUTF(request.workingDir);
+        out.writeUTF(request.configPath);
+        out.writeInt(request.args.length);
+
+        for (final String arg : request.args)
+            out.writeUTF(arg);
+
+        out.flush();
+    }
+
+    /**
+     * Reads a request, rejecting it unless it bears the expected token.
+     *
+     * @param in A stream to read the request from.
+     * @param token The daemon's token.
+     * @return The request.
+     * @throws IOException if the request is malformed, or bears another token.
+     */
+    static Request readRequest(final DataInputStream in, final String token) throws IOException
+    {
+        if (in.readInt() != magic)
+            throw new IOException("Not a cornerstone request");
+
+        final int requestVersion = in.readInt();
+        if (requestVersion != version)
+            throw new IOException("Unsupported request version " + requestVersion + ", expected " + version);
+
+        // Constant time comparison, so the token can't be guessed byte by byte
+        final byte[] requestToken = in.readUTF().getBytes(UTF_8);
+        if (!MessageDigest.isEqual(requestToken, token.getBytes(UTF_8)))
+            throw new IOException("Invalid token, the client must be run by the daemon's owner");
+
+        final String workingDir = in.readUTF();
+        final String configPath = in.readUTF();
+        final int numArgs = in.readInt();
+
+        if (numArgs < 0)
+            throw new IOException("Malformed request, number of arguments is " + numArgs);
+
+        final List<String> args = new ArrayList<>(numArgs);
+        for (int i = 0; i < numArgs; i++)
+            args.add(in.readUTF());
+
+        return new Request(workingDir, configPath, args.toArray(new String[0]));
+    }
+
+    static void writeResponse(final DataOutputStream out, final Response response) throws IOException
+    {
+        out.writeInt(response.exitCode);
+        out.writeUTF(response.message);
+        out.flush();
+    }
+
+    static Response readResponse(final DataInputStream in) throws IOException
+    {
+        final int exitCode = in.readInt();
+        return new Response(exitCode, in.readUTF());
+    }
+}
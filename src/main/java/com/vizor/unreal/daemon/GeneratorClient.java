@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.daemon;
+
+import com.vizor.unreal.daemon.DaemonProtocol.Request;
+import com.vizor.unreal.daemon.DaemonProtocol.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static com.vizor.unreal.config.Config.configPathProperty;
+import static com.vizor.unreal.daemon.DaemonProtocol.exitSuccess;
+import static java.lang.System.err;
+import static java.lang.System.getProperty;
+import static java.lang.System.out;
+import static java.nio.file.Paths.get;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * A thin client, forwarding its command line to a running {@link GeneratorDaemon}. The client runs before the config is
+ * loaded and logging is initialized (those are the costs it saves), so it reports straight to the standard streams.
+ */
+public final class GeneratorClient
+{
+    private static final int connectTimeoutMillis = 1000;
+
+    private GeneratorClient()
+    {
+    }
+
+    /**
+     * Asks the daemon to convert with the given command line arguments and waits for the conversion to finish.
+     *
+     * @param port A port, the daemon listens on.
+     * @param args Command line arguments, forwarded as is.
+     * @return Exit code of the conversion, or null if there is no daemon listening on the port.
+     */
+    public static Integer forward(final int port, final String[] args)
+    {
+        final String token;
+        try
+        {
+            token = DaemonProtocol.readToken();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unable to read the daemon token: " + e.getMessage(), e);
+        }
+
+        if (isNull(token))
+        {
+            err.println("No daemon has been started by this user ('" + DaemonProtocol.getTokenPath() + "' doesn't exist)");
+            return null;
+        }
+
+        try (final Socket socket = new Socket())
+        {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), connectTimeoutMillis);
+
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DaemonProtocol.writeRequest(output, token, new Request(getProperty("user.dir"), getConfigPath(), args));
+
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final Response response = DaemonProtocol.readResponse(input);
+
+            if (response.exitCode == exitSuccess)
+                out.println("Daemon: " + response.message);
+            else
+                err.println("Daemon: " + response.message);
+
+            return response.exitCode;
+        }
+        catch (ConnectException | SocketTimeoutException e)
+        {
+            err.println("No daemon is listening on port " + port);
+            return null;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unable to communicate with the daemon on port " + port + ": " +
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * An explicit config of the client is forwarded, so the daemon converts with it rather than with its own one.
+     * The property's name is a compile-time constant, so the config class isn't loaded.
+     */
+    private static String getConfigPath()
+    {
+        final String configPath = getProperty(configPathProperty);
+        return nonNull(configPath) ? get(configPath).toAbsolutePath().toString() : "";
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.daemon;
+
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.convert.ConversionProfile;
+import com.vizor.unreal.convert.Converter;
+import com.vizor.unreal.daemon.DaemonProtocol.Request;
+import com.vizor.unreal.daemon.DaemonProtocol.Response;
+import com.vizor.unreal.util.CliHandler;
+import com.vizor.unreal.util.CliHandler.Parse;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static com.vizor.unreal.daemon.DaemonProtocol.exitFailure;
+import static com.vizor.unreal.daemon.DaemonProtocol.exitSuccess;
+import static java.lang.Math.round;
+import static java.lang.System.nanoTime;
+import static java.nio.file.Paths.get;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A long-lived generator, serving conversion requests of '--connect' clients over a loopback socket. Saves the JVM
+ * startup and config loading on every build and keeps converters warm between requests, so unchanged proto files
+ * are neither parsed nor converted again.
+ *
+ * Each request is converted with its own copy of the daemon's config, patched with the request's CLI options and
+ * with relative paths resolved against the client's working directory, thus requests never affect each other.
+ * Requests with equal configs share a converter and are served one at a time, others are served in parallel.
+ */
+public final class GeneratorDaemon implements AutoCloseable
+{
+    private static final Logger log = getLogger(GeneratorDaemon.class);
+
+    /** How many warm converters (i.e. distinct configs) are kept between requests */
+    private static final int maxWarmConverters = 16;
+
+    /** Keeps responses within the limit of DataOutputStream.writeUTF() */
+    private static final int maxMessageLength = 8192;
+
+    private final Config baseConfig;
+    private final String token;
+    private final ServerSocket serverSocket;
+    private final ExecutorService requestExecutor = newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "cornerstone-daemon-request");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Converter> converters = new LinkedHashMap<String, Converter>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Converter> eldest)
+        {
+            return size() > maxWarmConverters;
+        }
+    };
+
+    /**
+     * Starts listening on the loopback interface. Only clients, run by the same user, are served.
+     *
+     * @param baseConfig Config, which requests' options are applied to.
+     */
+    public GeneratorDaemon(final Config baseConfig)
+    {
+        this.baseConfig = baseConfig;
+
+        try
+        {
+            this.token = DaemonProtocol.getOrCreateToken();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unable to create the daemon token: " + e.getMessage(), e);
+        }
+
+        try
+        {
+            this.serverSocket = new ServerSocket(baseConfig.getDaemonPort(), 0, InetAddress.getLoopbackAddress());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unable to listen on port " + baseConfig.getDaemonPort() + ": " +
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Accepts and serves requests until the daemon is closed.
+     */
+    public void serve()
+    {
+        log.info("Daemon is listening on {}, press Ctrl+C to stop...", serverSocket.getLocalSocketAddress());
+
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket socket = serverSocket.accept();
+                requestExecutor.execute(() -> handle(socket));
+            }
+            catch (IOException e)
+            {
+                if (!serverSocket.isClosed())
+                    log.error("Unable to accept a connection: {}", e.toString());
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        requestExecutor.shutdownNow();
+
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void handle(final Socket socket)
+    {
+        try (final Socket s = socket;
+             final DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream())))
+        {
+            final Request request;
+            try
+            {
+                request = DaemonProtocol.readRequest(in, token);
+            }
+            catch (IOException e)
+            {
+                log.warn("Rejected a request: {}", e.getMessage());
+                DaemonProtocol.writeResponse(out, new Response(exitFailure, "Request rejected: " + e.getMessage()));
+                return;
+            }
+
+            DaemonProtocol.writeResponse(out, serve(request));
+        }
+        catch (IOException e)
+        {
+            log.error("Unable to serve a request: {}", e.toString());
+        }
+    }
+
+    private Response serve(final Request request)
+    {
+        final long start = nanoTime();
+
+        try
+        {
+            final Parse parse = CliHandler.parseQuietly(request.args);
+            final Config config = createConfig(request, parse);
+            final Converter converter = getConverter(config);
+
+            log.info("Converting '{}' for {}", config.getSrcPath(), request.workingDir);
+
+            final ConversionProfile profile = nonNull(parse.getProfile()) ?
+                    new ConversionProfile() : ConversionProfile.disabled();
+
+            try
+            {
+                // Converters keep state between runs, so the same converter can't run concurrently
+                synchronized (converter)
+                {
+                    converter.convert(profile);
+                }
+            }
+            finally
+            {
+                if (nonNull(parse.getProfile()))
+                    profile.report(get(request.workingDir).resolve(parse.getProfile()));
+            }
+
+            final float elapsed = (float) round((double) (nanoTime() - start) / 1000000.0) / 1000.0f;
+            return new Response(exitSuccess, "All done in " + elapsed + " seconds.");
+        }
+        catch (RuntimeException e)
+        {
+            log.error("Conversion failed: {}", e.getMessage(), e);
+            return new Response(exitFailure, truncate("Conversion failed: " + e.getMessage()));
+        }
+    }
+
+    private Config createConfig(final Request request, final Parse parse)
+    {
+        if (parse.isDaemon() || parse.isWatch())
+            throw new IllegalArgumentException("Neither 'daemon' nor 'watch' can be requested from the daemon");
+
+        // A client's explicit config replaces the daemon's one, as it would in-process
+        final Config config = request.configPath.isEmpty() ? baseConfig.copy() : Config.load(get(request.configPath));
+
+        config.patchWithCliOptions(parse);
+        config.resolvePaths(get(request.workingDir));
+        config.validate();
+
+        return config;
+    }
+
+    private Converter getConverter(final Config config)
+    {
+        synchronized (converters)
+        {
+            return converters.computeIfAbsent(config.getFingerprint(), f -> new Converter(config, true));
+        }
+    }
+
+    private static String truncate(final String message)
+    {
+        return (message.length() > maxMessageLength) ? message.substring(0, maxMessageLength) + "..." : message;
+    }
+}
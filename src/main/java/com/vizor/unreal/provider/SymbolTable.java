@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.provider;
+
+import com.vizor.unreal.tree.CppType;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.util.Collections.emptyList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A schema-wide table of user-defined types (messages and enums), which is filled while proto files are being parsed,
+ * and shared by all {@link TypesProvider}s.
+ *
+ * Each proto file may only see types, declared in itself or in files it (transitively) imports. Thus providers don't
+ * access the table directly, but through a {@link Scope}, which is just a lightweight view over the table.
+ *
+ * Types may be registered by a single thread, while others read the table concurrently. An owner should only become a
+ * part of some scope once all its types have been registered, so readers always observe complete scopes.
+ */
+public final class SymbolTable
+{
+    private static final class Symbol
+    {
+        private final Object owner;
+        private final String name;
+        private final CppType type;
+
+        private Symbol(final Object owner, final String name, final CppType type)
+        {
+            this.owner = requireNonNull(owner);
+            this.name = requireNonNull(name);
+            this.type = requireNonNull(type);
+        }
+    }
+
+    // Lists are rarely modified and read a lot, so readers iterate over them without any locking
+    private final Map<String, List<Symbol>> symbolsByName = new ConcurrentHashMap<>();
+    private final Map<String, List<Symbol>> symbolsByLastSegment = new ConcurrentHashMap<>();
+    private final Map<Object, List<Symbol>> symbolsByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a type, declared within an owner (usually a proto file). Different owners may declare types with
+     * the same name, it only becomes an error if both are visible within the same scope.
+     *
+     * @param owner An owner, declaring the type.
+     * @param name A fully qualified name of the type.
+     * @param type A C++ type, the name corresponds to.
+     */
+    public void register(final Object owner, final String name, final CppType type)
+    {
+        final Symbol symbol = new Symbol(owner, name, type);
+
+        symbolsByName.computeIfAbsent(name, n -> new CopyOnWriteArrayList<>()).add(symbol);
+        symbolsByLastSegment.computeIfAbsent(getLastSegment(name), n -> new CopyOnWriteArrayList<>()).add(symbol);
+        symbolsByOwner.computeIfAbsent(owner, o -> new CopyOnWriteArrayList<>()).add(symbol);
+    }
+
+    /**
+     * @param name A (partially) qualified name, like 'common.Vector3'.
+     * @return The last segment of the name, like 'Vector3'.
+     */
+    static String getLastSegment(final String name)
+    {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Tells whether a fully qualified name ends with the given (partially) qualified one, e.g. 'game.common.Vector3'
+     * ends with 'Vector3' and 'common.Vector3', but neither with 'mon.Vector3', nor with 'Vector'.
+     *
+     * @param name A fully qualified name.
+     * @param suffix A (partially) qualified name.
+     * @return True if the name ends with the suffix.
+     */
+    static boolean endsWithSegments(final String name, final String suffix)
+    {
+        if (!name.endsWith(suffix))
+            return false;
+
+        final int prefixLength = name.length() - suffix.length();
+        return (prefixLength == 0) || (name.charAt(prefixLength - 1) == '.');
+    }
+
+    /**
+     * Creates a view of the table, only containing types, declared by the given owners.
+     *
+     * @param owners Owners, whose types should be visible.
+     * @return A view of the table.
+     */
+    public Scope scope(final Collection<?> owners)
+    {
+        return new Scope(owners);
+    }
+
+    /**
+     * A read-only view of the {@link SymbolTable}, only exposing types of certain owners.
+     */
+    public final class Scope
+    {
+        private final Set<Object> owners;
+
+        private Scope(final Collection<?> owners)
+        {
+            this.owners = new HashSet<>(owners);
+        }
+
+        /**
+         * Looks up a type by its fully qualified name.
+         *
+         * @param name Fully qualified name of the type.
+         * @return A type, or null if no type with such name is visible within the scope.
+         */
+        public CppType get(final String name)
+        {
+            CppType found = null;
+
+            for (final Symbol symbol : symbolsByName.getOrDefault(name, emptyList()))
+            {
+                if (!owners.contains(symbol.owner))
+                    continue;
+
+                if (found != null)
+                    throw new RuntimeException("Type association '" + name + "' -> '" + found.getName() +
+                            "' is already defined");
+
+                found = symbol.type;
+            }
+
+            return found;
+        }
+
+        /**
+         * Looks up types, whose fully qualified names end with the given (partially) qualified name, e.g. both
+         * 'game.common.Vector3' and 'physics.Vector3' for 'Vector3'. Only types, sharing the last segment of the name,
+         * are checked.
+         *
+         * @param suffix A (partially) qualified name.
+         * @param consumer A consumer, accepting matching types.
+         */
+        public void forEachEndingWith(final String suffix, final Consumer<CppType> consumer)
+        {
+            for (final Symbol symbol : symbolsByLastSegment.getOrDefault(getLastSegment(suffix), emptyList()))
+            {
+                if (owners.contains(symbol.owner) && endsWithSegments(symbol.name, suffix))
+                    consumer.accept(symbol.type);
+            }
+        }
+
+        /**
+         * Iterates over all visible types.
+         *
+         * @param consumer A consumer, accepting fully qualified type names and types.
+         */
+        public void forEach(final BiConsumer<String, CppType> consumer)
+        {
+            for (final Object owner : owners)
+            {
+                for (final Symbol symbol : symbolsByOwner.getOrDefault(owner, emptyList()))
+                    consumer.accept(symbol.name, symbol.type);
+            }
+        }
+    }
+}
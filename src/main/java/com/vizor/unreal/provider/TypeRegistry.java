@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.provider;
+
+import com.vizor.unreal.tree.CppType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.vizor.unreal.provider.SymbolTable.getLastSegment;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Types, registered within a {@link TypesProvider}, along with the indices to look them up. Builtin types of each
+ * provider class are registered once, and the frozen registry is shared by all providers of that class. A provider
+ * only copies the registry if something is registered into it afterwards.
+ */
+final class TypeRegistry
+{
+    private final Map<String, CppType> types;
+
+    /** Names of registered types by their last segments, so short names are resolved without scanning all types */
+    private final Map<String, List<String>> namesByLastSegment;
+
+    /** Types, having a native mapping, in the order they were registered */
+    private final Map<Class<?>, CppType> nativeTypes;
+
+    private final CppType arrayType;
+    private final boolean frozen;
+
+    TypeRegistry(final CppType arrayType)
+    {
+        this(new HashMap<>(), new HashMap<>(), new LinkedHashMap<>(), arrayType, false);
+    }
+
+    private TypeRegistry(final Map<String, CppType> types, final Map<String, List<String>> namesByLastSegment,
+                         final Map<Class<?>, CppType> nativeTypes, final CppType arrayType, final boolean frozen)
+    {
+        this.types = types;
+        this.namesByLastSegment = namesByLastSegment;
+        this.nativeTypes = nativeTypes;
+        this.arrayType = requireNonNull(arrayType);
+        this.frozen = frozen;
+    }
+
+    /**
+     * @return An immutable view of this registry. This registry shouldn't be modified afterwards.
+     */
+    TypeRegistry freeze()
+    {
+        return new TypeRegistry(unmodifiableMap(types), unmodifiableMap(namesByLastSegment),
+                unmodifiableMap(nativeTypes), arrayType, true);
+    }
+
+    /**
+     * @return A mutable copy of this registry, the types themselves are shared.
+     */
+    TypeRegistry copy()
+    {
+        final Map<String, List<String>> namesCopy = new HashMap<>();
+        namesByLastSegment.forEach((segment, names) -> namesCopy.put(segment, new ArrayList<>(names)));
+
+        return new TypeRegistry(new HashMap<>(types), namesCopy, new LinkedHashMap<>(nativeTypes), arrayType, false);
+    }
+
+    boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    void register(final String protoType, final CppType cppType, final Class<?> nativeType)
+    {
+        final CppType previous = types.put(protoType, cppType);
+        if (nonNull(previous))
+            throw new RuntimeException("Type association '" + protoType + "' -> '" + previous.getName() +
+                    "' is already defined");
+
+        namesByLastSegment.computeIfAbsent(getLastSegment(protoType), n -> new ArrayList<>(1)).add(protoType);
+
+        if (nonNull(nativeType))
+        {
+            cppType.markAsNative(nativeType);
+            nativeTypes.putIfAbsent(nativeType, cppType);
+        }
+    }
+
+    CppType get(final String name)
+    {
+        return types.get(name);
+    }
+
+    List<String> getNamesByLastSegment(final String lastSegment)
+    {
+        return namesByLastSegment.getOrDefault(lastSegment, emptyList());
+    }
+
+    /**
+     * @param clazz A native class.
+     * @return A type, the class is mapped to, or null if there's no such type.
+     */
+    CppType getNative(final Class<?> clazz)
+    {
+        final CppType exact = nativeTypes.get(clazz);
+        if (nonNull(exact))
+            return exact;
+
+        // Native classes might be more generic than the requested one (e.g. Map for HashMap)
+        for (final CppType type : nativeTypes.values())
+        {
+            if (type.isA(clazz))
+                return type;
+        }
+
+        return null;
+    }
+
+    CppType getArrayType()
+    {
+        return arrayType;
+    }
+}
@@ -16,88 +16,174 @@
 package com.vizor.unreal.provider;
 
 import com.vizor.unreal.tree.CppType;
-import com.vizor.unreal.util.Misc;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static com.vizor.unreal.util.Misc.splitGeneric;
+import static com.vizor.unreal.provider.SymbolTable.endsWithSegments;
+import static com.vizor.unreal.provider.SymbolTable.getLastSegment;
+import static com.vizor.unreal.util.Misc.removeWhitespaces;
 import static java.text.MessageFormat.format;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
-import static java.util.regex.Pattern.compile;
-import static java.util.stream.Collectors.toList;
 
 public abstract class TypesProvider
 {
-    private static final Pattern typePattern = compile("^([A-Za-z][A-Za-z0-9_.]+)(<(.+)>)?$");
+    /** Builtin types of each provider class, registered once and shared by all instances of that class */
+    private static final Map<Class<?>, TypeRegistry> builtins = new ConcurrentHashMap<>();
 
-    private final Map<String, CppType> types = new HashMap<>();
-    private final Map<String, CppType> compiledGenerics = new HashMap<>();
+    /** Shared builtin types, until something is registered into this provider, which gets its own copy then */
+    private TypeRegistry registry;
 
-    private final CppType arrayType;
+    /**
+     * Type expressions, as they were passed to {@link #get(String)}, and types they resolve to. The same few
+     * expressions are looked up for every field, so each one is only parsed once. Cleared whenever a resolution
+     * might change (a type is registered, or the scope is changed).
+     */
+    private final Map<String, CppType> resolved = new ConcurrentHashMap<>();
+
+    /** User-defined types, visible to this provider. Null if only builtin types are available. */
+    private SymbolTable.Scope scope = null;
 
     TypesProvider()
     {
-        arrayType = requireNonNull(initArrayType(), "An array type should be initialized, but method "
-                + getClass().getCanonicalName() + ".initArrayType() returned null");
+        registry = builtins.computeIfAbsent(getClass(), c -> createBuiltins());
+    }
+
+    private TypeRegistry createBuiltins()
+    {
+        registry = new TypeRegistry(requireNonNull(initArrayType(), "An array type should be initialized, " +
+                "but method " + getClass().getCanonicalName() + ".initArrayType() returned null"));
 
         init();
+        return registry.freeze();
     }
 
     /**
      * Returns a type from caches
-     * @param type Input type name for a certain
+     * @param type Input type name for a certain, either a plain name ('int32', 'common.Vector3'), or a generic one
+     *             ('map<string, common.Vector3>'). Whitespaces are ignored.
      * @return A type, corresponding
      */
     public final CppType get(final String type)
     {
-        final Matcher matcher = typePattern.matcher(Misc.removeWhitespaces(type));
+        final CppType cached = resolved.get(type);
+        if (nonNull(cached))
+            return cached;
+
+        // Not computeIfAbsent(), because generic arguments are resolved (and cached) recursively
+        final CppType found = resolve(type, removeWhitespaces(type));
+        resolved.putIfAbsent(type, found);
+
+        return found;
+    }
+
+    /**
+     * Parses a type expression, which is either a name, or a name followed by comma-separated generic arguments in
+     * angle brackets, each of them being a type expression itself.
+     *
+     * @param type The type expression, as it was given.
+     * @param expression The same expression without whitespaces.
+     * @return A type, the expression resolves to.
+     */
+    private CppType resolve(final String type, final String expression)
+    {
+        final int length = expression.length();
+        final int nameLength = getNameLength(expression);
+
+        if (nameLength == 0)
+            throw new RuntimeException("'" + type + "' doesn't look like a valid type name");
+
+        if (nameLength == length)
+            return getPlainType(expression);
 
-        if (!matcher.matches())
+        if (expression.charAt(nameLength) != '<' || expression.charAt(length - 1) != '>')
             throw new RuntimeException("'" + type + "' doesn't look like a valid type name");
 
-        final int groupCount = matcher.groupCount();
-        if (groupCount != 3)
-            throw new RuntimeException("Unexpected number of groups: " + groupCount);
+        final List<CppType> genericArguments = new ArrayList<>();
 
-        final String typeName = matcher.group(1);
-        final String genericParams = matcher.group(3);
+        // The last character closes the argument list, so it ends the last argument
+        final int last = length - 1;
 
-        if (nonNull(genericParams))
+        int depth = 0;
+        int argumentBegin = nameLength + 1;
+
+        for (int i = argumentBegin; i <= last; i++)
         {
-            if (!compiledGenerics.containsKey(type))
+            final char c = expression.charAt(i);
+
+            if (i == last || (c == ',' && depth == 0))
+            {
+                if (depth != 0)
+                    throw new RuntimeException("Missing '>' in '" + type + "'");
+
+                if (i == argumentBegin)
+                    throw new RuntimeException("'" + type + "' has an empty generic argument");
+
+                genericArguments.add(get(expression.substring(argumentBegin, i)));
+                argumentBegin = i + 1;
+            }
+            else if (c == '<')
             {
-                compiledGenerics.put(type, getGeneric(typeName, splitGeneric(genericParams).stream()
-                    .map(this::get)
-                    .collect(toList()))
-                );
+                depth++;
             }
+            else if (c == '>')
+            {
+                if (depth == 0)
+                    throw new RuntimeException("Missing '<' in '" + type + "'");
 
-            return compiledGenerics.get(type);
+                depth--;
+            }
         }
 
-        return getPlainType(typeName);
+        return getGeneric(expression.substring(0, nameLength), genericArguments);
+    }
+
+    /**
+     * @param expression A type expression.
+     * @return Length of the type name the expression starts with, zero if it doesn't start with a valid type name.
+     */
+    private static int getNameLength(final String expression)
+    {
+        final int length = expression.length();
+        if (length == 0 || !isAsciiLetter(expression.charAt(0)))
+            return 0;
+
+        int i = 1;
+        while (i < length)
+        {
+            final char c = expression.charAt(i);
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9') && c != '_' && c != '.')
+                break;
+
+            i++;
+        }
+
+        return i;
+    }
+
+    private static boolean isAsciiLetter(final char c)
+    {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
     }
 
     public final CppType getNative(final Class<?> clazz)
     {
-        return types.values().stream()
-            .filter(t -> t.hasNativeType() && t.isA(clazz))
-            .findFirst()
-            .orElseThrow(() -> new RuntimeException(TypesProvider.this.getClass().getSimpleName() +
-                    "doesn't have a native mapping for " + clazz.getSimpleName()));
+        final CppType nativeType = registry.getNative(clazz);
+        if (isNull(nativeType))
+            throw new RuntimeException(getClass().getSimpleName() + " doesn't have a native mapping for " +
+                    clazz.getSimpleName());
+
+        return nativeType;
     }
 
     private CppType getBestType(final String typeName)
     {
         {
-            final CppType foundType = types.get(typeName);
+            final CppType foundType = registry.get(typeName);
 
             if (!isNull(foundType))
             {
@@ -105,24 +191,39 @@ public abstract class TypesProvider
             }
         }
 
-        final Pattern typePattern = compile("^(.*\\.)?" + typeName);
+        if (nonNull(scope))
+        {
+            final CppType foundType = scope.get(typeName);
 
-        List<Map.Entry<String, CppType>> possibleTypeEntries = types.entrySet()
-            .stream()
-            .filter(entry->typePattern.matcher(entry.getKey()).matches())
-            .collect(Collectors.toList());
+            if (!isNull(foundType))
+            {
+                return foundType;
+            }
+        }
+
+        // A short (or partially qualified) name, like 'Vector3' for 'game.common.Vector3'
+        final List<CppType> possibleTypes = new ArrayList<>();
+
+        for (final String name : registry.getNamesByLastSegment(getLastSegment(typeName)))
+        {
+            if (endsWithSegments(name, typeName))
+                possibleTypes.add(registry.get(name));
+        }
+
+        if (nonNull(scope))
+            scope.forEachEndingWith(typeName, possibleTypes::add);
 
-        if (possibleTypeEntries.size() > 1)
+        if (possibleTypes.size() > 1)
         {
-            throw new RuntimeException(format("Cannot determine best possible type for {} out of {} options", typeName, possibleTypeEntries.size()));
+            throw new RuntimeException(format("Cannot determine best possible type for {0} out of {1} options", typeName, possibleTypes.size()));
         }
 
-        if (possibleTypeEntries.size() == 0)
+        if (possibleTypes.size() == 0)
         {
             return null;
         }
 
-        return possibleTypeEntries.get(0).getValue();
+        return possibleTypes.get(0);
     }
 
     private CppType getPlainType(final String typeName)
@@ -146,13 +247,13 @@ public abstract class TypesProvider
 
     final void register(final String protoType, final CppType cppType, final Class<?> nativeType)
     {
-        final CppType previous = types.put(protoType, cppType);
-        if (nonNull(previous))
-            throw new RuntimeException("Type association '" + protoType + "' -> '" + previous.getName() +
-                    "' is already defined");
+        resolved.clear();
 
-        if (nonNull(nativeType))
-            cppType.markAsNative(nativeType);
+        // Builtin types are shared, so copy them on write
+        if (registry.isFrozen())
+            registry = registry.copy();
+
+        registry.register(protoType, cppType, nativeType);
     }
 
     final void registerAlias(final String protoType, final String cppTypeName)
@@ -160,7 +261,7 @@ public abstract class TypesProvider
         if (isNull(protoType) || isNull(cppTypeName))
             throw new RuntimeException("Neither protoType nor cppTypeName shouldn't be null");
 
-        final CppType cppType = types.getOrDefault(cppTypeName, null);
+        final CppType cppType = registry.get(cppTypeName);
         if (isNull(cppType))
             throw new RuntimeException("Can't putTrough an alias '" + protoType + "' to '" + cppTypeName + "' because the source type name '" +
                     cppTypeName + "' not found");
@@ -168,9 +269,20 @@ public abstract class TypesProvider
         register(protoType, cppType);
     }
 
+    /**
+     * Makes user-defined types of the scope visible to this provider, in addition to builtin types.
+     *
+     * @param scope A scope of the schema-wide symbol table.
+     */
+    public final void setScope(final SymbolTable.Scope scope)
+    {
+        resolved.clear();
+        this.scope = scope;
+    }
+
     public final CppType arrayOf(CppType arrayType)
     {
-        return this.arrayType.makeGeneric(arrayType);
+        return registry.getArrayType().makeGeneric(arrayType);
     }
 
     // Overridable methods
@@ -182,7 +294,8 @@ public abstract class TypesProvider
     protected abstract CppType initArrayType();
 
     /**
-     * Init all using types. Been called internally after {@link #initArrayType()}.
+     * Init all using types. Been called internally after {@link #initArrayType()}, only once per provider class:
+     * registered types are shared by all instances of the class, so they mustn't depend on the instance.
      */
     protected abstract void init();
 
@@ -197,7 +310,7 @@ public abstract class TypesProvider
             throw new IllegalArgumentException(message);
         }
 
-        final CppType foundType = types.get(typeName);
+        final CppType foundType = registry.get(typeName);
         if (isNull(foundType))
         {
             final String message = format("{0} doesn't have a corresponding C++ type for {1}",
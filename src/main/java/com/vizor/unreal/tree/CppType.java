@@ -19,6 +19,9 @@ package com.vizor.unreal.tree;
 import com.vizor.unreal.util.MessageOrderResolver;
 import com.vizor.unreal.writer.CppPrinter;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -26,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.Logger;
 
@@ -36,10 +40,10 @@ import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.nCopies;
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 import static org.apache.logging.log4j.LogManager.getLogger;
 
 @SuppressWarnings("unused")
@@ -126,8 +130,31 @@ public class CppType implements CtLeaf
 
     private Class<?> nativeClass = null;
 
-    /** The hash code is being cached, because it is kinda hard to calculate **/
+    /** The hash code is computed once the type is created (or modified), because it is kinda hard to calculate **/
     private int hash;
+
+    /** Computed on the first use, generic arguments never change */
+    private volatile Set<CppType> flatGenericArguments = null;
+
+    /** Rendered forms of the type, see {@link #toString()} and {@link #getPrintedName()}. Computed on the first use. */
+    private String rendered = null;
+    private String printedName = null;
+
+    /**
+     * Types, derived from this one by {@link #makeHybrid}, so deriving the same type twice yields the same instance,
+     * rather than an equal copy. Created on the first use, most types never get derived.
+     *
+     * Builtin types are shared by all conversions within the process (e.g. in watch or daemon mode), so derived types
+     * are only referenced weakly. Otherwise builtins would keep every 'TArray&lt;FSomeMessage&gt;' ever derived,
+     * along with its message type, forever.
+     */
+    private volatile Map<Derivation, DerivedType> derivedTypes = null;
+
+    /** Entry of this type in the map of the type it has been derived from, if any */
+    private volatile DerivedType derivedFrom = null;
+
+    /** Collected derived types, which have to be removed from maps of their origins */
+    private static final ReferenceQueue<CppType> collectedTypes = new ReferenceQueue<>();
     
     private CppType(String name, String defaultValue, Kind kind)
     {
@@ -161,6 +188,7 @@ public class CppType implements CtLeaf
         this.isTypedef = isTypedef;
         
         this.defaultValue = defaultValue;
+        rehash();
     }
     
     public CppType(CppType another)
@@ -178,6 +206,7 @@ public class CppType implements CtLeaf
         this.isTypedef = another.isTypedef;
         
         this.defaultValue = another.defaultValue;
+        rehash();
     }
     
 
@@ -254,6 +283,8 @@ public class CppType implements CtLeaf
     public final void addFunctionParams(CppType params)
     {
     	functionParams.add(params);
+    	rehash();
+    	printedName = null;
     }
     
     public final void markAsNative(final Class<?> nativeClass)
@@ -266,6 +297,7 @@ public class CppType implements CtLeaf
                 ", because it was already marked as " + this.nativeClass.getSimpleName());
 
         this.nativeClass = nativeClass;
+        onModified();
     }
 
     public final void markAsNativeArray()
@@ -297,6 +329,15 @@ public class CppType implements CtLeaf
         if (!isGeneric())
             return emptySet();
 
+        Set<CppType> flatTypes = flatGenericArguments;
+        if (isNull(flatTypes))
+            flatGenericArguments = flatTypes = unmodifiableSet(computeFlatGenericArguments());
+
+        return flatTypes;
+    }
+
+    private Set<CppType> computeFlatGenericArguments()
+    {
         final Set<CppType> flatTypes = new HashSet<>();
 
         final List<CppType> upperLevel = new ArrayList<>(genericParams);
@@ -333,6 +374,15 @@ public class CppType implements CtLeaf
                                final boolean isVolatile,
                                final boolean isTypedef)
     {
+        final Derivation derivation = new Derivation(genericParams, passage, isConstant, isVolatile, isTypedef);
+        final Map<Derivation, DerivedType> derived = getDerivedTypes();
+
+        final CppType existing = DerivedType.get(derived.get(derivation));
+        if (nonNull(existing))
+            return existing;
+
+        DerivedType.expungeCollected();
+
         final CppType cppType = new CppType(name, defaultValue, kind, genericParams, getMostUnderType(), passage, isConstant, isVolatile, isTypedef);
         cppType.setNamespaces(getNamespaces());
 
@@ -340,7 +390,72 @@ public class CppType implements CtLeaf
         if (hasNativeType())
             cppType.markAsNative(nativeClass);
 
-        return cppType;
+        // Keep the type's own copy of generic arguments, the given list might be modified afterwards
+        final DerivedType reference = new DerivedType(cppType, derived, new Derivation(cppType.genericParams, passage,
+                isConstant, isVolatile, isTypedef));
+
+        while (true)
+        {
+            final DerivedType raced = derived.putIfAbsent(reference.derivation, reference);
+            if (isNull(raced))
+                return cppType.derivedFrom(reference);
+
+            final CppType racedType = raced.get();
+            if (nonNull(racedType))
+                return racedType;
+
+            // Has been collected in the meantime, replace it
+            if (derived.replace(reference.derivation, raced, reference))
+                return cppType.derivedFrom(reference);
+        }
+    }
+
+    private CppType derivedFrom(final DerivedType reference)
+    {
+        derivedFrom = reference;
+        return this;
+    }
+
+    private Map<Derivation, DerivedType> getDerivedTypes()
+    {
+        Map<Derivation, DerivedType> derived = derivedTypes;
+
+        if (isNull(derived))
+        {
+            synchronized (this)
+            {
+                if (isNull(derivedTypes))
+                    derivedTypes = new ConcurrentHashMap<>();
+
+                derived = derivedTypes;
+            }
+        }
+
+        return derived;
+    }
+
+    /**
+     * Must be called whenever a type is modified, because the hash code and derived types depend on it. Types are
+     * only supposed to be modified right after being created, before being derived or put into a hash set. A derived
+     * type, which is modified, gets detached from the type it has been derived from.
+     */
+    private void onModified()
+    {
+        rehash();
+
+        rendered = null;
+        printedName = null;
+
+        if (nonNull(derivedTypes))
+            derivedTypes.clear();
+
+        // A modified type no longer matches the way it has been derived, so its origin must not hand it out anymore
+        final DerivedType origin = derivedFrom;
+        if (nonNull(origin))
+        {
+            origin.owner.remove(origin.derivation, origin);
+            derivedFrom = null;
+        }
     }
 
     public final CppType makeGeneric(final List<CppType> genericParams)
@@ -437,6 +552,8 @@ public class CppType implements CtLeaf
     {
         this.namespaces.clear();
         this.namespaces.addAll(namespaces);
+
+        onModified();
     }
 
     public final List<CppNamespace> getNamespaces()
@@ -474,8 +591,22 @@ public class CppType implements CtLeaf
     @Override
     public final String toString()
     {
-        final StringBuilder sb = new StringBuilder();
+        // Strings are immutable, so a racing thread would just render the same string once again
+        String result = rendered;
+
+        if (isNull(result))
+        {
+            final StringBuilder sb = new StringBuilder();
+            appendTo(sb);
 
+            rendered = result = sb.toString();
+        }
+
+        return result;
+    }
+
+    private void appendTo(final StringBuilder sb)
+    {
         for (CppNamespace namespace : namespaces)
         {
             final String namespaceName = (namespace != null) ? namespace.getName() : null;
@@ -483,43 +614,105 @@ public class CppType implements CtLeaf
                 sb.append(namespaceName).append("::");
         }
 
-
         sb.append(name);
 
         if (isGeneric())
-            sb.append(genericParams.stream().map(CppType::toString).collect(joining(", ", "<", ">")));
+        {
+            sb.append('<');
+            for (int i = 0; i < genericParams.size(); i++)
+            {
+                if (i > 0)
+                    sb.append(", ");
 
-        return sb.toString();
+                genericParams.get(i).appendTo(sb);
+            }
+            sb.append('>');
+        }
     }
 
-    @Override
-    public final int hashCode()
+    /**
+     * Renders the type the way it is written into the generated code by the {@link CppPrinter}, which, unlike
+     * {@link #toString()}, includes the 'typedef' keyword, function parameters and the passage symbols.
+     *
+     * @return Rendered type, e.g. 'TMap<FString, int32>&'.
+     */
+    public final String getPrintedName()
     {
-        if (hash == 0)
+        String result = printedName;
+
+        if (isNull(result))
         {
-            final List<Object> hashes = new ArrayList<>();
+            final StringBuilder sb = new StringBuilder();
+            appendPrintedTo(sb);
 
-            hashes.add(isConstant);
-            hashes.add(isVolatile);
-            hashes.add(isTypedef);
-            hashes.add(kind);
-            hashes.add(name);
+            printedName = result = sb.toString();
+        }
+
+        return result;
+    }
+
+    private void appendPrintedTo(final StringBuilder sb)
+    {
+        if (isTypedef)
+            sb.append("typedef ");
+
+        // Unlike toString(), namespaces aren't checked for being empty
+        for (final CppNamespace namespace : namespaces)
+            sb.append(namespace.getName()).append("::");
+
+        sb.append(name);
 
-            hashes.addAll(namespaces);
-            hashes.add(nativeClass);
+        if (isGeneric())
+            appendPrintedTo(sb, genericParams, '<', '>');
+
+        if (isFunction())
+            appendPrintedTo(sb, functionParams, '(', ')');
 
-            hashes.add(passage);
+        sb.append(passage.getSymbols());
+    }
 
-            if (isGeneric())
-                hashes.addAll(getFlatGenericArguments());
-            
-            if (isFunction())
-                hashes.addAll(getFunctionParams());
+    private static void appendPrintedTo(final StringBuilder sb, final List<CppType> types, final char open,
+                                        final char close)
+    {
+        sb.append(open);
+        for (int i = 0; i < types.size(); i++)
+        {
+            if (i > 0)
+                sb.append(", ");
 
-            // AbstractList's
-            hash = hashes.hashCode();
+            types.get(i).appendPrintedTo(sb);
         }
+        sb.append(close);
+    }
+
+    private void rehash()
+    {
+        int h = Boolean.hashCode(isConstant);
 
+        h = 31 * h + Boolean.hashCode(isVolatile);
+        h = 31 * h + Boolean.hashCode(isTypedef);
+        h = 31 * h + kind.hashCode();
+        h = 31 * h + name.hashCode();
+
+        for (final CppNamespace namespace : namespaces)
+            h = 31 * h + Objects.hashCode(namespace);
+
+        h = 31 * h + Objects.hashCode(nativeClass);
+        h = 31 * h + passage.hashCode();
+
+        // Hash codes of generic arguments have already been computed
+        for (final CppType genericParam : genericParams)
+            h = 31 * h + genericParam.hash;
+
+        for (final CppType functionParam : functionParams)
+            h = 31 * h + functionParam.hash;
+
+        hash = h;
+    }
+
+    @Override
+    public final int hashCode()
+    {
         return hash;
     }
 
@@ -533,7 +726,9 @@ public class CppType implements CtLeaf
         {
             final CppType otherType = (CppType) o;
 
-            return  (isConstant == otherType.isConstant) &&
+            // Hash codes are precomputed, so most unequal types are told apart right away
+            return  (hash == otherType.hash) &&
+                    (isConstant == otherType.isConstant) &&
                     (isVolatile == otherType.isVolatile) &&
                     (isTypedef == otherType.isTypedef) &&
                     Objects.equals(kind, otherType.kind) &&
@@ -541,10 +736,93 @@ public class CppType implements CtLeaf
                     Objects.equals(namespaces, otherType.namespaces) &&
                     Objects.equals(nativeClass, otherType.nativeClass) &&
                     Objects.equals(passage, otherType.passage) &&
-                    (!isGeneric() || Objects.equals(getFlatGenericArguments(), otherType.getFlatGenericArguments())) &&
-                    (!isFunction() || Objects.equals(getFunctionParams(), otherType.getFunctionParams()));
+                    Objects.equals(genericParams, otherType.genericParams) &&
+                    Objects.equals(functionParams, otherType.functionParams);
         }
 
         return false;
     }
+
+    /**
+     * A weak reference to a derived type, which knows where it's kept, so it can be removed once the type is collected.
+     */
+    private static final class DerivedType extends WeakReference<CppType>
+    {
+        private final Map<Derivation, DerivedType> owner;
+        private final Derivation derivation;
+
+        private DerivedType(final CppType type, final Map<Derivation, DerivedType> owner, final Derivation derivation)
+        {
+            super(type, collectedTypes);
+
+            this.owner = owner;
+            this.derivation = derivation;
+        }
+
+        private static CppType get(final DerivedType reference)
+        {
+            return isNull(reference) ? null : reference.get();
+        }
+
+        private static void expungeCollected()
+        {
+            for (Reference<? extends CppType> r = collectedTypes.poll(); nonNull(r); r = collectedTypes.poll())
+            {
+                final DerivedType collected = (DerivedType) r;
+                collected.owner.remove(collected.derivation, collected);
+            }
+        }
+    }
+
+    /**
+     * Tells how a type is derived from another one. Generic arguments are compared structurally, so builtin types,
+     * which are shared by all runs, don't collect a new derived type for each run's copy of the same message type.
+     */
+    private static final class Derivation
+    {
+        private final List<CppType> genericParams;
+        private final Passage passage;
+        private final boolean isConstant;
+        private final boolean isVolatile;
+        private final boolean isTypedef;
+        private final int hash;
+
+        private Derivation(final List<CppType> genericParams, final Passage passage, final boolean isConstant,
+                           final boolean isVolatile, final boolean isTypedef)
+        {
+            this.genericParams = genericParams;
+            this.passage = passage;
+            this.isConstant = isConstant;
+            this.isVolatile = isVolatile;
+            this.isTypedef = isTypedef;
+
+            int h = passage.ordinal();
+            h = 31 * h + (isConstant ? 1 : 0);
+            h = 31 * h + (isVolatile ? 1 : 0);
+            h = 31 * h + (isTypedef ? 1 : 0);
+
+            for (final CppType genericParam : genericParams)
+                h = 31 * h + genericParam.hash;
+
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (!(o instanceof Derivation))
+                return false;
+
+            final Derivation other = (Derivation) o;
+            return (hash == other.hash) && (passage == other.passage) && (isConstant == other.isConstant) &&
+                    (isVolatile == other.isVolatile) && (isTypedef == other.isTypedef) &&
+                    genericParams.equals(other.genericParams);
+        }
+    }
 }
@@ -37,15 +37,85 @@ public final class CliHandler
     {
         private String srcPath;
         private String dstPath;
+        private String dstPublicPath;
+        private String dstPrivatePath;
         private String moduleName;
         private String logLevel;
+        private Boolean isServer;
+        private Boolean incremental;
+        private Boolean streaming;
+        private Integer jobs;
+        private Integer daemonPort;
+        private boolean watch;
+        private boolean daemon;
+        private boolean connect;
+        private String createCds;
+        private String profile;
+        private String shard;
+        private String cacheDir;
+
+        public boolean isWatch()
+        {
+            return watch;
+        }
+
+        public boolean isDaemon()
+        {
+            return daemon;
+        }
+
+        public boolean isConnect()
+        {
+            return connect;
+        }
+
+        public Integer getDaemonPort()
+        {
+            return daemonPort;
+        }
+
+        public String getCreateCds()
+        {
+            return createCds;
+        }
+
+        public String getProfile()
+        {
+            return profile;
+        }
     }
 
     private static Option srcOption = new Option("s", "src_path", true, "Proto files root folder");
     private static Option dstOption = new Option("d", "dst_path", true, "Cpp generated files destination folder");
+    private static Option dstPublicOption = new Option("dst_public_path", true, "Cpp generated public files " +
+        "destination folder");
+    private static Option dstPrivateOption = new Option("dst_private_path", true, "Cpp generated private files " +
+        "destination folder");
     private static Option moduleNameOption = new Option("m", "module_name", true, "UE 4 API/Plugin name");
     private static Option logLevelOption = new Option("l", "log_level", true, "Override log level. Available options are: " +
         getLowercaseLog4jLevels().toString());
+    private static Option serverOption = new Option("is_server", false, "Generate server instead of client");
+    private static Option incrementalOption = new Option("i", "incremental", false, "Only regenerate proto files, " +
+        "changed since the previous run (including changes of their imports)");
+    private static Option streamingOption = new Option("streaming", false, "Keep as little as possible " +
+        "in memory, for huge source folders");
+    private static Option jobsOption = new Option("j", "jobs", true, "Number of threads to convert with " +
+        "(0 to use all available cores)");
+    private static Option watchOption = new Option("w", "watch", false, "Keep running after the conversion, " +
+        "regenerating outputs whenever proto files change");
+    private static Option daemonOption = new Option("daemon", false, "Run as a daemon, serving conversion requests " +
+        "of '--connect' clients");
+    private static Option connectOption = new Option("connect", false, "Forward the conversion to a running daemon " +
+        "(falls back to converting in-process if there is no daemon)");
+    private static Option daemonPortOption = new Option("p", "daemon_port", true, "Loopback TCP port of the daemon");
+    private static Option createCdsOption = new Option("create_cds", true, "Create a class data sharing archive " +
+        "at the given path, making the converter start faster (requires Java 13+)");
+    private static Option profileOption = new Option("profile", true, "Write a timing profile of the conversion " +
+        "(per phase and per proto file) into the given JSON file");
+    private static Option shardOption = new Option("shard", true, "Only convert a part of proto files, given as " +
+        "'i/N', so N processes can convert the whole set in parallel");
+    private static Option cacheDirOption = new Option("cache_dir", true, "A folder to cache generated files in, " +
+        "may be shared by several machines");
     private static Option helpOption = new Option("h", "help", false, "Print this help message");
     private static Option creditsOption = new Option("credits", false, "Print the creators of Cornerstone");
 
@@ -53,24 +123,12 @@ public final class CliHandler
 
     public CliHandler(String... args)
     {
-        final Options options = new Options();
-        options.addOption(srcOption)
-               .addOption(dstOption)
-               .addOption(moduleNameOption)
-               .addOption(logLevelOption)
-               .addOption(helpOption)
-               .addOption(creditsOption);
+        final Options options = createOptions();
         try
         {
             final CommandLine cmd = new PosixParser().parse(options, args);
 
-            parse = new Parse();
-            {
-                parse.srcPath = cmd.getOptionValue(srcOption.getOpt());
-                parse.dstPath = cmd.getOptionValue(dstOption.getOpt());
-                parse.moduleName = cmd.getOptionValue(moduleNameOption.getOpt());
-                parse.logLevel = cmd.getOptionValue(logLevelOption.getOpt());
-            }
+            parse = parse(cmd);
 
             if (cmd.hasOption(helpOption.getOpt()))
                 printHelp(options, "Available commands:");
@@ -99,6 +157,98 @@ public final class CliHandler
         }
     }
 
+    /**
+     * Parses command line arguments, but unlike the constructor never prints help or exits the process, thus is
+     * suitable for arguments, received from elsewhere (e.g. by the daemon).
+     *
+     * @param args Command line arguments.
+     * @return Parsed arguments.
+     * @throws IllegalArgumentException If arguments are malformed.
+     */
+    public static Parse parseQuietly(String... args)
+    {
+        try
+        {
+            return parse(new PosixParser().parse(createOptions(), args));
+        }
+        catch (final ParseException e)
+        {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static Options createOptions()
+    {
+        final Options options = new Options();
+        options.addOption(srcOption)
+               .addOption(dstOption)
+               .addOption(dstPublicOption)
+               .addOption(dstPrivateOption)
+               .addOption(moduleNameOption)
+               .addOption(logLevelOption)
+               .addOption(serverOption)
+               .addOption(incrementalOption)
+               .addOption(streamingOption)
+               .addOption(jobsOption)
+               .addOption(watchOption)
+               .addOption(daemonOption)
+               .addOption(connectOption)
+               .addOption(daemonPortOption)
+               .addOption(createCdsOption)
+               .addOption(profileOption)
+               .addOption(shardOption)
+               .addOption(cacheDirOption)
+               .addOption(helpOption)
+               .addOption(creditsOption);
+        return options;
+    }
+
+    private static Parse parse(final CommandLine cmd) throws ParseException
+    {
+        final Parse parse = new Parse();
+
+        parse.srcPath = cmd.getOptionValue(srcOption.getOpt());
+        parse.dstPath = cmd.getOptionValue(dstOption.getOpt());
+        parse.dstPublicPath = cmd.getOptionValue(dstPublicOption.getOpt());
+        parse.dstPrivatePath = cmd.getOptionValue(dstPrivateOption.getOpt());
+        parse.moduleName = cmd.getOptionValue(moduleNameOption.getOpt());
+        parse.logLevel = cmd.getOptionValue(logLevelOption.getOpt());
+
+        // Flags are only able to turn an option on, so leave them null (not overridden) if not set
+        parse.isServer = cmd.hasOption(serverOption.getOpt()) ? true : null;
+        parse.incremental = cmd.hasOption(incrementalOption.getOpt()) ? true : null;
+        parse.streaming = cmd.hasOption(streamingOption.getOpt()) ? true : null;
+        parse.jobs = parseInteger(cmd, jobsOption);
+        parse.daemonPort = parseInteger(cmd, daemonPortOption);
+        parse.shard = cmd.getOptionValue(shardOption.getOpt());
+        parse.cacheDir = cmd.getOptionValue(cacheDirOption.getOpt());
+
+        parse.watch = cmd.hasOption(watchOption.getOpt());
+        parse.daemon = cmd.hasOption(daemonOption.getOpt());
+        parse.connect = cmd.hasOption(connectOption.getOpt());
+        parse.createCds = cmd.getOptionValue(createCdsOption.getOpt());
+        parse.profile = cmd.getOptionValue(profileOption.getOpt());
+
+        if (parse.daemon && (parse.watch || parse.connect))
+            throw new ParseException("'daemon' can't be combined with 'watch' or 'connect'");
+
+        return parse;
+    }
+
+    private static Integer parseInteger(final CommandLine cmd, final Option option) throws ParseException
+    {
+        final String value = cmd.getOptionValue(option.getOpt());
+
+        try
+        {
+            return (value != null) ? Integer.valueOf(value) : null;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ParseException("'" + option.getLongOpt() + "' must be an integer, got '" + value + "' instead");
+        }
+    }
+
     private void printHelp(Options options, String extra)
     {
         final String commandLineSyntax = "java -jar cornerstone.jar";
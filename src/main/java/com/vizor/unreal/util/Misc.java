@@ -18,8 +18,11 @@ package com.vizor.unreal.util;
 import org.apache.logging.log4j.Level;
 
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
@@ -34,10 +37,15 @@ import static java.lang.Character.isUpperCase;
 import static java.lang.Character.isWhitespace;
 import static java.lang.Character.toLowerCase;
 import static java.lang.Character.toUpperCase;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newByteChannel;
 import static java.nio.file.Files.walk;
 import static java.nio.file.Paths.get;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static java.util.Arrays.stream;
 import static java.util.Objects.isNull;
+import static java.util.concurrent.ThreadLocalRandom.current;
 import static java.util.stream.Collectors.toList;
 
 @SuppressWarnings("unused")
@@ -52,6 +60,8 @@ public class Misc
      */
     private static final int MAX_CHARS_IN_STRING = Integer.MAX_VALUE - 10;
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * Returns an input string without whitespaces.
      *
@@ -450,6 +460,82 @@ public class Misc
         }
     }
 
+    /**
+     * Creates an empty file with a random name next to the target file, so content can be written into it first, and
+     * then moved over the target at once. Unlike {@link Files#createTempFile}, which only lets the owner access the
+     * file, the file is created with default permissions (subject to umask), since it becomes the target afterwards.
+     *
+     * @param target A file, which is going to be replaced.
+     * @return Path to the created file.
+     * @throws IOException if the file can't be created, e.g. the target's folder doesn't exist.
+     */
+    public static Path createTempSibling(final Path target) throws IOException
+    {
+        final Path directory = target.toAbsolutePath().getParent();
+        final String prefix = target.getFileName().toString() + '.';
+
+        while (true)
+        {
+            final Path temp = directory.resolve(prefix + Long.toUnsignedString(current().nextLong(), 36) + ".tmp");
+
+            try
+            {
+                newByteChannel(temp, CREATE_NEW, WRITE).close();
+                return temp;
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                // Extremely unlikely, just try another name
+            }
+        }
+    }
+
+    /**
+     * Computes a SHA-256 digest of the given strings (encoded in UTF-8), fed to the digest one after another.
+     *
+     * @param strings Strings to compute the digest of.
+     * @return Lowercase hex representation of the digest.
+     */
+    public static String sha256Hex(final String... strings)
+    {
+        final MessageDigest digest = newSha256Digest();
+
+        for (final String s : strings)
+            digest.update(s.getBytes(UTF_8));
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return A new SHA-256 message digest.
+     */
+    public static MessageDigest newSha256Digest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param bytes Bytes to convert, e.g. a digest.
+     * @return Lowercase hex representation of the bytes.
+     */
+    public static String toHex(final byte[] bytes)
+    {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+
+        for (final byte b : bytes)
+            sb.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+
+        return sb.toString();
+    }
+
     /**
      * Retrieves lowercase names of all supported log4j log levels sorted by its priority.
      * @see org.apache.logging.log4j.Level for details.
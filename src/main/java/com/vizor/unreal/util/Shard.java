@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.util;
+
+import static com.vizor.unreal.util.Misc.stringIsNullOrEmpty;
+import static java.lang.Integer.parseInt;
+
+/**
+ * One of N parts of the proto files set, which is converted by a separate process (or machine). Shards are numbered
+ * from 1 to N, and written as 'i/N'.
+ */
+public final class Shard
+{
+    private static final Shard whole = new Shard(1, 1);
+
+    private final int index;
+    private final int count;
+
+    private Shard(final int index, final int count)
+    {
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * @return A shard, containing all proto files.
+     */
+    public static Shard whole()
+    {
+        return whole;
+    }
+
+    /**
+     * Parses a shard, written as 'i/N'.
+     *
+     * @param shard A shard, null or an empty string means the whole set.
+     * @return A parsed shard.
+     * @throws IllegalArgumentException If the shard is malformed.
+     */
+    public static Shard parse(final String shard)
+    {
+        if (stringIsNullOrEmpty(shard))
+            return whole;
+
+        final String[] parts = shard.split("/", -1);
+
+        try
+        {
+            if (parts.length == 2)
+            {
+                final int index = parseInt(parts[0].trim());
+                final int count = parseInt(parts[1].trim());
+
+                if (index >= 1 && index <= count)
+                    return new Shard(index, count);
+            }
+        }
+        catch (NumberFormatException ignore)
+        {
+            // Reported below
+        }
+
+        throw new IllegalArgumentException("shard, which is '" + shard + "' must look like 'i/N', where " +
+                "1 <= i <= N");
+    }
+
+    /**
+     * @return Index of the shard, starting from 1.
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @return Total number of shards.
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return True if the shard contains all proto files.
+     */
+    public boolean isWhole()
+    {
+        return count == 1;
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof Shard))
+            return false;
+
+        final Shard other = (Shard) o;
+        return index == other.index && count == other.count;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * index + count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.util;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.walk;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.Objects.isNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Watches a folder and all its sub-folders for changes. Editors tend to produce several events per save (truncate,
+ * write, rename a temporary file, etc.), so events are collected until the folder stays quiet for a while, and
+ * reported as a single batch.
+ */
+public final class SourceWatcher implements AutoCloseable
+{
+    private static final Logger log = getLogger(SourceWatcher.class);
+
+    private final Path root;
+    private final long quietPeriodMillis;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+
+    /**
+     * Starts watching the folder.
+     *
+     * @param root A folder to watch, including all its sub-folders.
+     * @param quietPeriodMillis How long the folder should stay unchanged, before a batch of changes is reported.
+     */
+    public SourceWatcher(final Path root, final long quietPeriodMillis)
+    {
+        this.root = root;
+        this.quietPeriodMillis = quietPeriodMillis;
+
+        try
+        {
+            this.watchService = root.getFileSystem().newWatchService();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        registerRecursively(root);
+    }
+
+    /**
+     * Blocks until something changes within the watched folder and the folder stays quiet for the quiet period.
+     *
+     * @return Changed (created, modified or deleted) paths. Contains the root itself if some events were lost, so
+     *         the whole folder should be considered changed.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public Set<Path> awaitChanges() throws InterruptedException
+    {
+        final Set<Path> changes = new TreeSet<>();
+
+        WatchKey key = watchService.take();
+        while (key != null)
+        {
+            collectEvents(key, changes);
+            key = watchService.poll(quietPeriodMillis, MILLISECONDS);
+        }
+
+        return changes;
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void collectEvents(final WatchKey key, final Set<Path> changes)
+    {
+        final Path folder = watchedFolders.get(key);
+
+        for (final WatchEvent<?> event : key.pollEvents())
+        {
+            if (event.kind() == OVERFLOW || isNull(folder))
+            {
+                log.debug("Some file system events were lost, treating '{}' as changed", root);
+                changes.add(root);
+                continue;
+            }
+
+            final Path changed = folder.resolve((Path) event.context());
+            changes.add(changed);
+
+            // Newly created folders should be watched too
+            if (event.kind() == ENTRY_CREATE && isDirectory(changed))
+                registerRecursively(changed);
+        }
+
+        // A key becomes invalid once its folder is deleted
+        if (!key.reset())
+            watchedFolders.remove(key);
+    }
+
+    private void registerRecursively(final Path folder)
+    {
+        try (final Stream<Path> paths = walk(folder))
+        {
+            paths.filter(Files::isDirectory).forEach(this::register);
+        }
+        catch (IOException | UncheckedIOException e)
+        {
+            // The folder might have been removed right after it was created, just don't watch it
+            log.warn("Unable to watch '{}': {}", folder, e.toString());
+        }
+    }
+
+    private void register(final Path folder)
+    {
+        try
+        {
+            final WatchKey key = folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            watchedFolders.put(key, folder);
+
+            log.debug("Watching '{}'", folder);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -17,8 +17,6 @@ package com.vizor.unreal.writer;
 
 import com.vizor.unreal.util.Misc;
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +24,7 @@ import static java.lang.Character.isWhitespace;
 import static java.lang.Math.max;
 import static java.lang.String.join;
 import static java.lang.System.lineSeparator;
+import static java.nio.charset.Charset.defaultCharset;
 
 final class ContentWriter
 {
@@ -94,17 +93,38 @@ final class ContentWriter
             lines.remove(lines.size() - 1);
     }
 
-    void writeToFile(final String fileName)
+    /**
+     * Renders the content the same way it is written into the file: every line (including the last one) is
+     * followed by the line separator.
+     *
+     * @return Encoded content.
+     */
+    byte[] getBytes()
     {
-        try (final PrintWriter pw = new PrintWriter(fileName))
-        {
-            lines.forEach(pw::println);
-            pw.println(currentLine.toString());
-        }
-        catch (IOException ex)
-        {
-            throw new RuntimeException(ex);
-        }
+        final String separator = lineSeparator();
+        final StringBuilder sb = new StringBuilder();
+
+        for (final String line : lines)
+            sb.append(line).append(separator);
+
+        sb.append(currentLine).append(separator);
+        return sb.toString().getBytes(defaultCharset());
+    }
+
+    /**
+     * Same as {@link #getBytes()}, but forgets the content afterwards, so it doesn't stay in memory twice while
+     * the encoded content is being written.
+     *
+     * @return Encoded content.
+     */
+    byte[] takeBytes()
+    {
+        final byte[] bytes = getBytes();
+
+        lines.clear();
+        currentLine = new StringBuilder();
+
+        return bytes;
     }
 
     private static void trimTrailingSpaces(final StringBuilder sb)
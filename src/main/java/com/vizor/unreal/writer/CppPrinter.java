@@ -37,23 +37,34 @@ import com.vizor.unreal.tree.preprocessor.CppPragma;
 import com.vizor.unreal.writer.annotation.DummyDecoratorWriter;
 import com.vizor.unreal.writer.annotation.UEDecoratorWriter;
 
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.vizor.unreal.tree.CppRecord.Residence.Header;
 import static java.lang.String.valueOf;
+import static java.nio.file.Paths.get;
 import static java.text.MessageFormat.format;
 import static java.util.Arrays.asList;
 import static java.util.Comparator.comparingInt;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
+import static org.apache.logging.log4j.LogManager.getLogger;
 
 @SuppressWarnings("UnusedReturnValue")
 public class CppPrinter implements AutoCloseable
 {
+    private static final Logger log = getLogger(CppPrinter.class);
+
+    /** Used by printers, which write their files right away */
+    private static final OutputSink disk = new DiskOutputSink();
+
     public enum HeaderType
     {
         Public,
@@ -83,13 +94,22 @@ public class CppPrinter implements AutoCloseable
     private final DestinationConfig absPathToFile;
     private final DummyDecoratorWriter decoratorWriter;
     
-    private final Config config = Config.get();
+    private final Config config;
 
     private final HeaderType headerType;
 
-    public CppPrinter(DestinationConfig absPathToFile, String apiName, HeaderType headerType) 
+    private final Consumer<GeneratedFile> output;
+
+    /**
+     * @param output Receives complete header and code files once the printer is closed. Might write them right away,
+     *               or pass them to someone else (for instance, a dedicated writer thread).
+     */
+    public CppPrinter(Config config, DestinationConfig absPathToFile, String apiName, HeaderType headerType,
+                      Consumer<GeneratedFile> output)
     {
+        this.config = config;
         this.headerType = headerType;
+        this.output = requireNonNull(output);
 
         this.absPathToFile = absPathToFile;
         this.decoratorWriter = new UEDecoratorWriter(apiName);
@@ -108,19 +128,61 @@ public class CppPrinter implements AutoCloseable
         newLine();
     }
 
-    public CppPrinter(DestinationConfig absPathToFile, String apiName)
+    public CppPrinter(Config config, DestinationConfig absPathToFile, String apiName, HeaderType headerType)
+    {
+        this(config, absPathToFile, apiName, headerType, CppPrinter::writeIfChanged);
+    }
+
+    public CppPrinter(Config config, DestinationConfig absPathToFile, String apiName, Consumer<GeneratedFile> output)
     {
-        this(absPathToFile, apiName, HeaderType.Public);
+        this(config, absPathToFile, apiName, HeaderType.Public, output);
+    }
+
+    public CppPrinter(Config config, DestinationConfig absPathToFile, String apiName)
+    {
+        this(config, absPathToFile, apiName, HeaderType.Public);
     }
 
     @Override
     public final void close()
     {
-        final String absoluteHeaderPath = (headerType == HeaderType.Public ? absPathToFile.pathPublic : absPathToFile.pathPrivate) + headerExtension;
-        final String absoluteCodePath = absPathToFile.pathPrivate + codeExtension;
+        // Hand each file over as soon as it is rendered, so the writer may start writing it while the next one is rendered
+        output.accept(new GeneratedFile(getHeaderPath(absPathToFile, headerType), header.takeBytes()));
+        output.accept(new GeneratedFile(getCodePath(absPathToFile), codeFile.takeBytes()));
+    }
+
+    /**
+     * Writes the file to the disk right away, unless it's already up to date.
+     *
+     * @param file A file to be written.
+     */
+    public static void writeIfChanged(final GeneratedFile file)
+    {
+        if (!disk.write(file))
+            log.debug("{} is up to date, skipped", file);
+    }
 
-        header.writeToFile(absoluteHeaderPath);
-        codeFile.writeToFile(absoluteCodePath);
+    /**
+     * Computes a path to the header file, a printer writes for the given destination.
+     *
+     * @param absPathToFile Destination, the printer is (or will be) created for.
+     * @param headerType Whether the header is public or private.
+     * @return A path to the header file.
+     */
+    public static Path getHeaderPath(final DestinationConfig absPathToFile, final HeaderType headerType)
+    {
+        return get((headerType == HeaderType.Public ? absPathToFile.pathPublic : absPathToFile.pathPrivate) + headerExtension);
+    }
+
+    /**
+     * Computes a path to the code (*.cpp) file, a printer writes for the given destination.
+     *
+     * @param absPathToFile Destination, the printer is (or will be) created for.
+     * @return A path to the code file.
+     */
+    public static Path getCodePath(final DestinationConfig absPathToFile)
+    {
+        return get(absPathToFile.pathPrivate + codeExtension);
     }
 
     public final CppPrinter writeInlineComment(String comment)
@@ -219,34 +281,8 @@ public class CppPrinter implements AutoCloseable
 
     public void visit(CppType type)
     {
-    	if(type.isTypedef())
-    	{
-    		 write("typedef ");
-    	}
-    	
-        // Write namespaces (if have some)
-        type.getNamespaces().forEach(ns -> write(ns.getName()).write("::"));
-
-        // Write type name
-        write(type.getName());
-
-        // If a type is kinda generic - write its arguments
-        if (type.isGeneric())
-        {
-            write("<");
-            type.getGenericParams().forEach(argument -> argument.accept(this).write(commaSeparator));
-            backspace(commaSeparator.length()).write(">");
-        }
-        
-        // if is function signature
-        if(type.isFunction())
-        {
-        	 write("(");
-        	 type.getFunctionParams().forEach(argument -> argument.accept(this).write(commaSeparator));
-        	 backspace(commaSeparator.length()).write(")");
-        }
-
-        write(type.getPassage().getSymbols());
+        // Types are rendered once and shared by all printers, see CppType.getPrintedName()
+        write(type.getPrintedName());
     }
 
     public void visit(CppInclude i)
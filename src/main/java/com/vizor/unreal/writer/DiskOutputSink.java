@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.writer;
+
+import com.vizor.unreal.config.DestinationConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+import static com.vizor.unreal.util.Misc.createTempSibling;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.getFileAttributeView;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.setPosixFilePermissions;
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.nonNull;
+
+/**
+ * Writes generated files into the file system.
+ *
+ * Files, which already have exactly the same content, are left untouched. That preserves their modification time, so
+ * build tools don't recompile anything depending on them. Changed content is written into a temporary file first,
+ * which then replaces the target file at once, so nobody ever observes a partially written file.
+ */
+public final class DiskOutputSink implements OutputSink
+{
+    @Override
+    public void prepare(final DestinationConfig dstPath)
+    {
+        prepare(dstPath.pathPublic, "Public");
+        prepare(dstPath.pathPrivate, "Private");
+    }
+
+    @Override
+    public boolean write(final GeneratedFile file)
+    {
+        try
+        {
+            if (hasContent(file.getPath(), file.getContent()))
+                return false;
+
+            replaceContent(file.getPath(), file.getContent());
+            return true;
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public boolean exists(final Path path)
+    {
+        return isRegularFile(path);
+    }
+
+    @Override
+    public byte[] read(final Path path)
+    {
+        try
+        {
+            return readAllBytes(path);
+        }
+        catch (NoSuchFileException ex)
+        {
+            return null;
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void delete(final Path path)
+    {
+        try
+        {
+            deleteIfExists(path);
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void sync(final Path path)
+    {
+        try (final FileChannel channel = FileChannel.open(path, WRITE))
+        {
+            channel.force(true);
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void prepare(final Path folder, final String name)
+    {
+        final File file = folder.toFile();
+
+        if (!file.isDirectory())
+            if (!file.mkdirs())
+                throw new IllegalArgumentException("Destination " + name + " folder '" + folder + "' does not exist, or isn't a directory");
+    }
+
+    private static void copyPermissions(final Path from, final Path to) throws IOException
+    {
+        if (!isRegularFile(from))
+            return;
+
+        final PosixFileAttributeView source = getFileAttributeView(from, PosixFileAttributeView.class);
+        if (nonNull(source))
+            setPosixFilePermissions(to, source.readAttributes().permissions());
+    }
+
+    private static boolean hasContent(final Path path, final byte[] content) throws IOException
+    {
+        // Cheap checks first, no need to read the file if it doesn't exist or its size differs
+        if (!isRegularFile(path) || size(path) != content.length)
+            return false;
+
+        // Read the whole file at once, one extra byte tells whether it has grown since its size was checked
+        final ByteBuffer existing = ByteBuffer.allocate(content.length + 1);
+
+        try (final FileChannel channel = FileChannel.open(path, READ))
+        {
+            while (channel.read(existing) > 0)
+            {
+                if (!existing.hasRemaining())
+                    return false;
+            }
+        }
+
+        existing.flip();
+        return existing.equals(ByteBuffer.wrap(content));
+    }
+
+    private static void replaceContent(final Path path, final byte[] content) throws IOException
+    {
+        Path temp;
+
+        try
+        {
+            temp = createTempSibling(path);
+        }
+        catch (NoSuchFileException e)
+        {
+            // Folders are only created when needed, so nothing has to be checked while they exist
+            createDirectories(path.toAbsolutePath().getParent());
+            temp = createTempSibling(path);
+        }
+
+        try
+        {
+            // The whole content is passed to the channel at once, so it's usually written with a single system call
+            try (final FileChannel channel = FileChannel.open(temp, WRITE, TRUNCATE_EXISTING))
+            {
+                final ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+
+            // Replacing a file shouldn't change who can access it
+            copyPermissions(path, temp);
+
+            try
+            {
+                move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                move(temp, path, REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            deleteIfExists(temp);
+        }
+    }
+}
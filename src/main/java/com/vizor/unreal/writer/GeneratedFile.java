@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.writer;
+
+import java.nio.file.Path;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Complete content of a generated file, which is ready to be written, but might be written later (or elsewhere),
+ * so generating code doesn't have to wait for the file system. Files are written by an {@link OutputSink}.
+ */
+public final class GeneratedFile
+{
+    private final Path path;
+    private final byte[] content;
+
+    public GeneratedFile(final Path path, final byte[] content)
+    {
+        this.path = requireNonNull(path);
+        this.content = requireNonNull(content);
+    }
+
+    public Path getPath()
+    {
+        return path;
+    }
+
+    public byte[] getContent()
+    {
+        return content;
+    }
+
+    @Override
+    public String toString()
+    {
+        return path.toString();
+    }
+}
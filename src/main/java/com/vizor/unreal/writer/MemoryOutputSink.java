@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.writer;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Keeps generated files in memory, never touching the file system. Files are sorted by their paths, so the content
+ * of the sink doesn't depend on the order, in which files were generated.
+ */
+public final class MemoryOutputSink implements OutputSink
+{
+    private final Map<Path, byte[]> files = new ConcurrentSkipListMap<>();
+
+    @Override
+    public boolean write(final GeneratedFile file)
+    {
+        final byte[] previous = files.put(file.getPath(), file.getContent());
+        return !Arrays.equals(previous, file.getContent());
+    }
+
+    @Override
+    public boolean exists(final Path path)
+    {
+        return files.containsKey(path);
+    }
+
+    @Override
+    public byte[] read(final Path path)
+    {
+        return files.get(path);
+    }
+
+    @Override
+    public void delete(final Path path)
+    {
+        files.remove(path);
+    }
+
+    /**
+     * @param path A path to a generated file.
+     * @return Content of the file, or null if there is no such file.
+     */
+    public byte[] get(final Path path)
+    {
+        return files.get(path);
+    }
+
+    /**
+     * @return A read-only view of all written files, sorted by their paths.
+     */
+    public Map<Path, byte[]> getFiles()
+    {
+        return unmodifiableMap(files);
+    }
+}
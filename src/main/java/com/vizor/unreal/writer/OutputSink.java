@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.writer;
+
+import com.vizor.unreal.config.DestinationConfig;
+
+import java.nio.file.Path;
+
+/**
+ * A place, where generated files go. Usually it's the file system (see {@link DiskOutputSink}), but generated files
+ * might as well be kept in memory (see {@link MemoryOutputSink}), e.g. by benchmarks, tests, or other tools, which
+ * embed the converter.
+ *
+ * Sinks are used by several threads at once, so implementations must be thread safe.
+ */
+public interface OutputSink
+{
+    /**
+     * Makes sure the destination is able to receive generated files.
+     *
+     * @param dstPath Destination folders.
+     * @throws IllegalArgumentException If the destination can't be used.
+     */
+    default void prepare(final DestinationConfig dstPath)
+    {
+    }
+
+    /**
+     * Writes the file, unless the sink already has exactly the same content at the same path.
+     *
+     * @param file A file to be written.
+     * @return True if the file has been written, false if it was already up to date.
+     */
+    boolean write(GeneratedFile file);
+
+    /**
+     * @param path A path to a generated file.
+     * @return True if the sink has a file at the path.
+     */
+    boolean exists(Path path);
+
+    /**
+     * @param path A path to a generated file.
+     * @return Content of the file, or null if the sink has no file at the path.
+     */
+    byte[] read(Path path);
+
+    /**
+     * Deletes a file, if it exists.
+     *
+     * @param path A path to a generated file.
+     */
+    void delete(Path path);
+
+    /**
+     * Makes sure a written file survives a power loss. Writes aren't required to be durable by themselves, so a batch
+     * of files can be written first, and synced afterwards.
+     *
+     * @param path A path to a previously written file.
+     */
+    default void sync(final Path path)
+    {
+    }
+}
@@ -0,0 +1,19 @@
+@echo off
+rem
+rem Runs the converter. If there is a class data sharing archive next to the jar, see --create_cds,
+rem the JVM is told to use it, which makes the converter start faster.
+rem
+setlocal
+set "DIR=%~dp0"
+set "JAR=%DIR%infraworld-cornerstone.jar"
+set "ARCHIVE=%DIR%infraworld-cornerstone.jsa"
+
+if defined JAVA_HOME (set "JAVA=%JAVA_HOME%\bin\java") else (set "JAVA=java")
+
+rem An outdated archive, e.g. created by another JVM or for another jar, is silently ignored with -Xshare:auto
+if exist "%ARCHIVE%" (
+    "%JAVA%" -XX:SharedArchiveFile="%ARCHIVE%" -Xshare:auto -jar "%JAR%" %*
+) else (
+    "%JAVA%" -jar "%JAR%" %*
+)
+exit /b %ERRORLEVEL%
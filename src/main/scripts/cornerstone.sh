@@ -0,0 +1,21 @@
+#!/bin/sh
+#
+# Runs the converter. If there is a class data sharing archive next to the jar (see '--create_cds'),
+# the JVM is told to use it, which makes the converter start faster.
+#
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAR="$DIR/infraworld-cornerstone.jar"
+ARCHIVE="$DIR/infraworld-cornerstone.jsa"
+
+if [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+else
+    JAVA=java
+fi
+
+if [ -f "$ARCHIVE" ]; then
+    # An outdated archive (another JVM, rebuilt jar) is silently ignored with -Xshare:auto
+    exec "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto -jar "$JAR" "$@"
+fi
+
+exec "$JAVA" -jar "$JAR" "$@"
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal;
+
+import com.vizor.unreal.config.Config;
+import org.junit.Test;
+
+import java.nio.file.Path;
+
+import static java.nio.file.Paths.get;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigTest
+{
+    @Test
+    public void defaultConfigTest()
+    {
+        // Every option of the bundled config should be loadable
+        final Config config = Config.get();
+
+        assertTrue(config.getEffectiveShard().isWhole());
+    }
+
+    @Test
+    public void resolvedPathsFingerprintTest()
+    {
+        final Config config = Config.get().copy();
+        final String outputFingerprint = config.getOutputFingerprint();
+        final String fingerprint = config.getFingerprint();
+
+        // Paths, resolved against the working directory (as the daemon does for its clients) are the same paths
+        final Path workingDir = get("").toAbsolutePath();
+        config.resolvePaths(workingDir);
+
+        assertEquals(outputFingerprint, config.getOutputFingerprint());
+        assertEquals(fingerprint, config.getFingerprint());
+
+        // While paths, resolved against any other folder, are not
+        final Config elsewhere = Config.get().copy();
+        elsewhere.resolvePaths(workingDir.resolve("elsewhere"));
+        assertNotEquals(outputFingerprint, elsewhere.getOutputFingerprint());
+    }
+}
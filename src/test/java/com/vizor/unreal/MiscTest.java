@@ -16,28 +16,45 @@
 package com.vizor.unreal;
 
 import com.vizor.unreal.util.Misc;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
 import static com.vizor.unreal.util.Misc.TAB;
+import static com.vizor.unreal.util.Misc.createTempSibling;
 import static com.vizor.unreal.util.Misc.removeWhitespaces;
 import static com.vizor.unreal.util.Misc.reorder;
+import static com.vizor.unreal.util.Misc.sha256Hex;
 import static com.vizor.unreal.util.Misc.snakeCaseToCamelCase;
 import static com.vizor.unreal.util.Misc.spaceSeparatedToCamelCase;
 import static com.vizor.unreal.util.Misc.splitGeneric;
 import static com.vizor.unreal.util.Misc.stringIsNullOrEmpty;
+import static com.vizor.unreal.util.Misc.toHex;
 import static java.lang.String.join;
+import static java.nio.file.Files.createFile;
+import static java.nio.file.Files.getFileAttributeView;
+import static java.nio.file.Files.getPosixFilePermissions;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.size;
 import static java.util.Arrays.asList;
 import static java.util.Collections.shuffle;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 public class MiscTest
 {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testSplitGeneric()
     {
@@ -231,4 +248,38 @@ public class MiscTest
             assertEquals(nTabs, sb.toString());
         }
     }
+
+    @Test
+    public void testSha256Hex()
+    {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", sha256Hex(""));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", sha256Hex("abc"));
+
+        // Parts are fed one after another
+        assertEquals(sha256Hex("abc"), sha256Hex("a", "b", "c"));
+        assertEquals(64, sha256Hex("abc").length());
+
+        assertEquals("", toHex(new byte[0]));
+        assertEquals("00017f80ff", toHex(new byte[] { 0, 1, 127, -128, -1 }));
+    }
+
+    @Test
+    public void testCreateTempSibling() throws IOException
+    {
+        final Path target = folder.getRoot().toPath().resolve("Message.h");
+
+        final Path first = createTempSibling(target);
+        final Path second = createTempSibling(target);
+
+        assertEquals(target.getParent(), first.getParent());
+        assertTrue(first.getFileName().toString().startsWith("Message.h."));
+        assertNotEquals(first, second);
+
+        assertTrue(isRegularFile(first));
+        assertEquals(0, size(first));
+
+        // Temporary files replace targets, so they should be accessible just like any other new file
+        if (getFileAttributeView(first, PosixFileAttributeView.class) != null)
+            assertEquals(getPosixFilePermissions(createFile(target)), getPosixFilePermissions(first));
+    }
 }
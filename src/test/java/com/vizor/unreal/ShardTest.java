@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal;
+
+import com.vizor.unreal.util.Shard;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardTest
+{
+    @Test
+    public void testParse()
+    {
+        final Shard shard = Shard.parse("2/5");
+
+        assertEquals(2, shard.getIndex());
+        assertEquals(5, shard.getCount());
+        assertFalse(shard.isWhole());
+        assertEquals("2/5", shard.toString());
+        assertEquals(shard, Shard.parse(" 2 / 5 "));
+    }
+
+    @Test
+    public void testWhole()
+    {
+        assertSame(Shard.whole(), Shard.parse(null));
+        assertSame(Shard.whole(), Shard.parse(""));
+        assertTrue(Shard.parse("1/1").isWhole());
+    }
+
+    @Test
+    public void testMalformed()
+    {
+        for (final String malformed : new String[] {"0/3", "4/3", "-1/3", "1/0", "1", "1/2/3", "a/b", "/"})
+        {
+            try
+            {
+                Shard.parse(malformed);
+                fail(malformed + " should have been rejected");
+            }
+            catch (IllegalArgumentException ignore)
+            {
+                // Expected
+            }
+        }
+    }
+}
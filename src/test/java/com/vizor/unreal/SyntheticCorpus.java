@@ -0,0 +1,389 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Paths.get;
+
+/**
+ * Generates a synthetic tree of proto files, big enough to reproduce production-scale schemas offline.
+ *
+ * Files are spread over several layers. Each file imports two files of the previous layer, so imports form a DAG
+ * full of diamonds, as deep as the number of layers. Messages have nested types, oneofs, maps, repeated fields and
+ * references to messages of the same and imported files, and pick their plain fields from a small shared pool, so
+ * struct consolidation has some work to do. Each file also has a service.
+ *
+ * Generation is deterministic: the same seed and sizes always produce exactly the same sources. Message names are
+ * unique across all files, because the converter can't tell apart same-named messages of different (visible)
+ * packages.
+ *
+ * May be run as a standalone tool, see {@link #main(String...)}.
+ */
+public final class SyntheticCorpus
+{
+    /** Plain fields, shared by messages. The same name always has the same type */
+    private static final String[][] sharedFields = {
+        {"value", "double"},
+        {"count", "int32"},
+        {"score", "float"},
+        {"label", "string"},
+        {"flags", "uint32"},
+        {"payload", "bytes"},
+        {"weight", "int64"},
+        {"enabled", "bool"},
+    };
+
+    /** Scalar types, the converter has mappings for */
+    private static final String[] scalarTypes = {
+        "double", "float", "int32", "int64", "uint32", "uint64", "bool", "string", "bytes"
+    };
+
+    private final long seed;
+    private int numFiles = 100;
+    private int numMessages = 20;
+    private int numRpcs = 4;
+    private int depth = 4;
+
+    public SyntheticCorpus(final long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @param numFiles Number of proto files.
+     * @return This corpus.
+     */
+    public SyntheticCorpus files(final int numFiles)
+    {
+        this.numFiles = requirePositive(numFiles, "numFiles");
+        return this;
+    }
+
+    /**
+     * @param numMessages Number of top-level messages per file.
+     * @return This corpus.
+     */
+    public SyntheticCorpus messages(final int numMessages)
+    {
+        this.numMessages = requirePositive(numMessages, "numMessages");
+        return this;
+    }
+
+    /**
+     * @param numRpcs Number of RPCs of each file's service, zero if files shouldn't have services.
+     * @return This corpus.
+     */
+    public SyntheticCorpus rpcs(final int numRpcs)
+    {
+        if (numRpcs < 0)
+            throw new IllegalArgumentException("numRpcs must not be negative, got " + numRpcs + " instead");
+
+        this.numRpcs = numRpcs;
+        return this;
+    }
+
+    /**
+     * @param depth Number of layers of the import DAG. Files of the first layer don't import anything.
+     * @return This corpus.
+     */
+    public SyntheticCorpus depth(final int depth)
+    {
+        this.depth = requirePositive(depth, "depth");
+        return this;
+    }
+
+    /**
+     * Generates sources of all proto files.
+     *
+     * @return Sources of proto files, keyed by their paths, relative to the root of the tree.
+     */
+    public SortedMap<String, String> generate()
+    {
+        final Random random = new Random(seed);
+        final int numLayers = min(depth, numFiles);
+
+        // Layers are filled evenly, the first files go to the first layer
+        final List<List<Integer>> layers = new ArrayList<>(numLayers);
+        for (int l = 0; l < numLayers; l++)
+            layers.add(new ArrayList<>());
+
+        for (int i = 0; i < numFiles; i++)
+            layers.get((int) ((long) i * numLayers / numFiles)).add(i);
+
+        final SortedMap<String, String> sources = new TreeMap<>();
+        for (int l = 0; l < numLayers; l++)
+        {
+            for (final int i : layers.get(l))
+            {
+                final List<Integer> imports = new ArrayList<>();
+                if (l > 0)
+                {
+                    final List<Integer> previous = layers.get(l - 1);
+
+                    // Two files of the same layer usually share some imports, making a diamond
+                    final int first = previous.get(random.nextInt(previous.size()));
+                    imports.add(first);
+
+                    if (previous.size() > 1)
+                    {
+                        int second = previous.get(random.nextInt(previous.size() - 1));
+                        if (second == first)
+                            second = previous.get(previous.size() - 1);
+                        imports.add(second);
+                    }
+                }
+
+                sources.put(fileName(l, i), new FileGenerator(random, l, i, imports).generate());
+            }
+        }
+
+        return sources;
+    }
+
+    /**
+     * Generates the proto files and writes them into the folder.
+     *
+     * @param root A folder to write the proto files into.
+     * @return Number of written files.
+     * @throws IOException If unable to write some file.
+     */
+    public int write(final Path root) throws IOException
+    {
+        final SortedMap<String, String> sources = generate();
+
+        for (final Map.Entry<String, String> e : sources.entrySet())
+        {
+            final Path path = root.resolve(e.getKey());
+
+            createDirectories(path.getParent());
+            Files.write(path, e.getValue().getBytes(UTF_8));
+        }
+
+        return sources.size();
+    }
+
+    /**
+     * Writes a synthetic corpus, run with '-h' to see the available options, e.g.:
+     * <pre>
+     *     java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.vizor.unreal.SyntheticCorpus \
+     *         -o /tmp/corpus -files 2000 -messages 20 -depth 8
+     * </pre>
+     *
+     * @param args Command line arguments.
+     * @throws IOException If unable to write the corpus.
+     */
+    public static void main(final String... args) throws IOException
+    {
+        final Options options = new Options();
+        options.addOption(new Option("o", "out", true, "A folder to write proto files into (required)"));
+        options.addOption(new Option("files", true, "Number of proto files (100 by default)"));
+        options.addOption(new Option("messages", true, "Number of messages per file (20 by default)"));
+        options.addOption(new Option("rpcs", true, "Number of RPCs per service (4 by default)"));
+        options.addOption(new Option("depth", true, "Depth of the import graph (4 by default)"));
+        options.addOption(new Option("seed", true, "Seed of the generator (0 by default)"));
+
+        final CommandLine cmd;
+        try
+        {
+            cmd = new PosixParser().parse(options, args);
+            if (!cmd.hasOption("o"))
+                throw new ParseException("Missing required option: o");
+        }
+        catch (final ParseException e)
+        {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp(SyntheticCorpus.class.getSimpleName(), options);
+            System.exit(1);
+            return;
+        }
+
+        final SyntheticCorpus corpus = new SyntheticCorpus(parseLong(cmd.getOptionValue("seed", "0")))
+            .files(parseInt(cmd.getOptionValue("files", "100")))
+            .messages(parseInt(cmd.getOptionValue("messages", "20")))
+            .rpcs(parseInt(cmd.getOptionValue("rpcs", "4")))
+            .depth(parseInt(cmd.getOptionValue("depth", "4")));
+
+        final Path root = get(cmd.getOptionValue("o"));
+        final int numWritten = corpus.write(root);
+
+        System.out.println(format("Written %d proto-files (%d messages) into '%s'", numWritten,
+                (long) numWritten * corpus.numMessages, root.toAbsolutePath()));
+    }
+
+    private static String fileName(final int layer, final int index)
+    {
+        return format("l%d/f%d.proto", layer, index);
+    }
+
+    private static int requirePositive(final int value, final String name)
+    {
+        if (value < 1)
+            throw new IllegalArgumentException(name + " must be positive, got " + value + " instead");
+        return value;
+    }
+
+    private final class FileGenerator
+    {
+        private final Random random;
+        private final int index;
+        private final List<Integer> imports;
+
+        private final StringBuilder sb = new StringBuilder();
+
+        private FileGenerator(final Random random, final int layer, final int index, final List<Integer> imports)
+        {
+            this.random = random;
+            this.index = index;
+            this.imports = imports;
+
+            sb.append("syntax = \"proto3\";\n\n");
+            sb.append(format("package synth.f%d;\n\n", index));
+
+            for (final int i : imports)
+                sb.append(format("import \"%s\";\n", fileName(layer - 1, i)));
+
+            if (!imports.isEmpty())
+                sb.append('\n');
+        }
+
+        private String generate()
+        {
+            sb.append(format("enum F%dKind {\n", index));
+            for (int k = 0; k < 3; k++)
+                sb.append(format("    F%d_KIND_%d = %d;\n", index, k, k));
+            sb.append("}\n\n");
+
+            for (int m = 0; m < numMessages; m++)
+                generateMessage(m);
+
+            if (numRpcs > 0)
+            {
+                sb.append(format("service F%dService {\n", index));
+                for (int r = 0; r < numRpcs; r++)
+                {
+                    sb.append(format("    rpc Call%d (%s) returns (%s);\n", r,
+                            localMessage(numMessages), anyMessage(numMessages)));
+                }
+                sb.append("}\n");
+            }
+
+            return sb.toString();
+        }
+
+        private void generateMessage(final int m)
+        {
+            int tag = 1;
+
+            sb.append(format("message F%dM%d {\n", index, m));
+            sb.append(format("    string name = %d;\n", tag++));
+            sb.append(format("    int64 id = %d;\n", tag++));
+
+            for (final String[] field : sharedFields)
+            {
+                if (random.nextInt(3) == 0)
+                    sb.append(format("    %s %s = %d;\n", field[1], field[0], tag++));
+            }
+
+            sb.append(format("    repeated %s values = %d;\n", randomScalar(), tag++));
+            sb.append(format("    map<string, %s> attributes = %d;\n", randomScalar(), tag++));
+            sb.append(format("    F%dKind kind = %d;\n", index, tag++));
+
+            // References to other messages may only point backwards, messages of this file can't depend on each other
+            if (m > 0)
+            {
+                sb.append(format("    %s sibling = %d;\n", localMessage(m), tag++));
+                sb.append(format("    repeated %s children = %d;\n", localMessage(m), tag++));
+            }
+
+            if (!imports.isEmpty())
+            {
+                sb.append(format("    %s parent = %d;\n", importedMessage(), tag++));
+                sb.append(format("    map<string, %s> links = %d;\n", importedMessage(), tag++));
+            }
+
+            if (random.nextBoolean())
+            {
+                sb.append(format("    message Detail%d {\n", m));
+                sb.append("        string note = 1;\n");
+                sb.append(format("        %s amount = 2;\n", randomScalar()));
+                sb.append("    }\n");
+                sb.append(format("    enum Mode%d {\n", m));
+                sb.append(format("        F%dM%d_MODE_OFF = 0;\n", index, m));
+                sb.append(format("        F%dM%d_MODE_ON = 1;\n", index, m));
+                sb.append("    }\n");
+                sb.append(format("    Detail%d detail = %d;\n", m, tag++));
+                sb.append(format("    repeated Detail%d details = %d;\n", m, tag++));
+                sb.append(format("    Mode%d mode = %d;\n", m, tag++));
+            }
+
+            if (random.nextBoolean())
+            {
+                sb.append("    oneof choice {\n");
+                sb.append(format("        string text = %d;\n", tag++));
+                sb.append(format("        %s number = %d;\n", randomScalar(), tag++));
+                if (m > 0)
+                    sb.append(format("        %s other = %d;\n", localMessage(m), tag++));
+                sb.append("    }\n");
+            }
+
+            sb.append("}\n\n");
+        }
+
+        private String randomScalar()
+        {
+            return scalarTypes[random.nextInt(scalarTypes.length)];
+        }
+
+        /** A random message of this file among the first 'bound' ones */
+        private String localMessage(final int bound)
+        {
+            return format("F%dM%d", index, random.nextInt(bound));
+        }
+
+        private String importedMessage()
+        {
+            final int i = imports.get(random.nextInt(imports.size()));
+            return format("synth.f%d.F%dM%d", i, i, random.nextInt(numMessages));
+        }
+
+        private String anyMessage(final int bound)
+        {
+            return (imports.isEmpty() || random.nextBoolean()) ? localMessage(bound) : importedMessage();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal;
+
+import com.squareup.wire.schema.internal.parser.ProtoFileElement;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import static com.squareup.wire.schema.Location.get;
+import static com.squareup.wire.schema.internal.parser.ProtoParser.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticCorpusTest
+{
+    @Test
+    public void testDeterministic()
+    {
+        final SortedMap<String, String> first = new SyntheticCorpus(42).files(30).messages(5).depth(3).generate();
+        final SortedMap<String, String> second = new SyntheticCorpus(42).files(30).messages(5).depth(3).generate();
+        final SortedMap<String, String> other = new SyntheticCorpus(43).files(30).messages(5).depth(3).generate();
+
+        assertEquals(30, first.size());
+        assertEquals(first, second);
+        assertEquals(first.keySet(), other.keySet());
+        assertNotEquals(first, other);
+    }
+
+    @Test
+    public void testParseable()
+    {
+        final SortedMap<String, String> sources = new SyntheticCorpus(7).files(12).messages(4).rpcs(3).depth(4)
+            .generate();
+
+        for (final Map.Entry<String, String> e : sources.entrySet())
+        {
+            final ProtoFileElement parsed = parse(get(e.getKey()), e.getValue());
+
+            // One enum and the messages, services are counted separately
+            assertEquals(5, parsed.types().size());
+            assertEquals(1, parsed.services().size());
+            assertEquals(3, parsed.services().get(0).rpcs().size());
+
+            // Files of the first layer import nothing, the others import two files of the previous layer
+            final boolean firstLayer = e.getKey().startsWith("l0/");
+            assertEquals(firstLayer ? 0 : 2, parsed.imports().size());
+
+            for (final String imported : parsed.imports())
+                assertTrue(imported, sources.containsKey(imported));
+        }
+    }
+
+    @Test
+    public void testWithoutServices()
+    {
+        final SortedMap<String, String> sources = new SyntheticCorpus(0).files(3).messages(1).rpcs(0).generate();
+        sources.values().forEach(s -> assertFalse(s.contains("service")));
+    }
+}
@@ -19,6 +19,7 @@ import com.vizor.unreal.tree.CppNamespace;
 import com.vizor.unreal.tree.CppType;
 import org.junit.Test;
 
+import java.lang.ref.WeakReference;
 import java.util.HashSet;
 import java.util.List;
 
@@ -36,6 +37,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TypeTest
@@ -199,6 +201,100 @@ public class TypeTest
         assertEquals(integerPrimitive1.makePtr(), integerPrimitive2.makePtr());
     }
 
+    @Test
+    public void derivedTypesTest()
+    {
+        final CppType map = CppType.wildcardGeneric("TMap", CppType.Kind.Struct, 2);
+
+        // Deriving the same type twice yields the very same instance
+        assertSame(map.makeGeneric(stringType, intType), map.makeGeneric(stringType, intType));
+        assertSame(stringType.makeRef().makeConstant(), stringType.makeRef().makeConstant());
+
+        // Even if generic arguments are equal copies
+        final CppType intCopy = plain("Integer", CppType.Kind.Struct);
+        assertSame(map.makeGeneric(stringType, intType), map.makeGeneric(stringType, intCopy));
+
+        // Order of generic arguments matters
+        final CppType stringToInt = map.makeGeneric(stringType, intType);
+        final CppType intToString = map.makeGeneric(intType, stringType);
+        assertNotEquals(stringToInt, intToString);
+        assertNotEquals(stringToInt.hashCode(), intToString.hashCode());
+
+        // Modified types are hashed again
+        final CppType namespaced = plain("FString", CppType.Kind.Struct);
+        assertEquals(stringType.hashCode(), namespaced.hashCode());
+
+        namespaced.setNamespaces(new CppNamespace("ue"));
+        assertNotEquals(stringType, namespaced);
+        assertEquals("ue::FString", namespaced.makeRef().getUnderType().toString());
+    }
+
+    @Test
+    public void modifiedDerivedTypesTest()
+    {
+        final CppType base = plain("FBase", CppType.Kind.Struct);
+
+        // A derived type, modified afterwards, is no longer handed out by its origin
+        final CppType nativePtr = base.makePtr();
+        nativePtr.markAsNative(String.class);
+
+        final CppType ptr = base.makePtr();
+        assertNotSame(nativePtr, ptr);
+        assertFalse(ptr.hasNativeType());
+        assertSame(ptr, base.makePtr());
+
+        final CppType namespacedRef = base.makeRef();
+        namespacedRef.setNamespaces(new CppNamespace("ue"));
+
+        assertNotSame(namespacedRef, base.makeRef());
+        assertTrue(base.makeRef().getNamespaces().isEmpty());
+    }
+
+    @Test
+    public void renderingTest()
+    {
+        final CppType map = CppType.wildcardGeneric("TMap", CppType.Kind.Struct, 2);
+        final CppType stringToPtr = map.makeGeneric(stringType, intType.makePtr());
+
+        assertEquals("TMap<FString, Integer>", stringToPtr.toString());
+        assertEquals("TMap<FString, Integer*>&", stringToPtr.makeRef().getPrintedName());
+
+        // Rendered forms are cached, but follow modifications of the type
+        assertSame(stringToPtr.toString(), stringToPtr.toString());
+
+        final CppType namespaced = plain("FVector", CppType.Kind.Struct);
+        assertEquals("FVector", namespaced.toString());
+        assertEquals("FVector", namespaced.getPrintedName());
+
+        namespaced.setNamespaces(new CppNamespace("ue"), new CppNamespace("math"));
+        assertEquals("ue::math::FVector", namespaced.toString());
+        assertEquals("ue::math::FVector", namespaced.getPrintedName());
+    }
+
+    @Test
+    public void derivedTypesCollectionTest() throws InterruptedException
+    {
+        // Builtins are shared by all conversions of a process, they mustn't keep types of previous conversions
+        final CppType array = CppType.wildcardGeneric("TArray", CppType.Kind.Struct, 1);
+
+        CppType message = plain("FRemovedMessage", CppType.Kind.Struct);
+        assertSame(array.makeGeneric(message).makeRef(), array.makeGeneric(message).makeRef());
+
+        final WeakReference<CppType> removed = new WeakReference<>(message);
+        message = null;
+
+        for (int i = 0; (i < 100) && (removed.get() != null); i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+
+            // Deriving something new cleans up collected types
+            array.makeGeneric(plain("FMessage" + i, CppType.Kind.Struct));
+        }
+
+        assertNull(removed.get());
+    }
+
     @Test
     public void flatGenericArgumentsTest()
     {
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal;
+
+import com.vizor.unreal.provider.ProtoTypesProvider;
+import com.vizor.unreal.provider.SymbolTable;
+import com.vizor.unreal.provider.TypesProvider;
+import com.vizor.unreal.provider.UnrealTypesProvider;
+import com.vizor.unreal.tree.CppType;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static com.vizor.unreal.tree.CppType.Kind.Struct;
+import static com.vizor.unreal.tree.CppType.plain;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TypesProviderTest
+{
+    @Test
+    public void plainTypeTest()
+    {
+        final TypesProvider provider = new UnrealTypesProvider();
+
+        assertEquals("int32", provider.get("int32").toString());
+        assertEquals("FString", provider.get("string").toString());
+
+        // Aliases resolve to the very same type
+        assertSame(provider.get("int32"), provider.get("int"));
+    }
+
+    @Test
+    public void genericTypeTest()
+    {
+        final TypesProvider provider = new UnrealTypesProvider();
+
+        assertEquals("TMap<FString, int32>", provider.get("map<string,int32>").toString());
+        assertEquals("TMap<FString, int32>", provider.get(" map < string , int32 > ").toString());
+        assertEquals("TMap<FString, TMap<int32, FString>>",
+                provider.get("map<string, map<int32, string>>").toString());
+
+        final TypesProvider protoProvider = new ProtoTypesProvider();
+        assertEquals("google::protobuf::Map<std::string, google::protobuf::int64>",
+                protoProvider.get("map<bytes, int64>").toString());
+    }
+
+    @Test
+    public void sharedBuiltinsTest()
+    {
+        final TypesProvider first = new UnrealTypesProvider();
+        final TypesProvider second = new UnrealTypesProvider();
+
+        assertSame(first.get("int32"), second.get("int32"));
+        assertSame(first.get("bool"), first.getNative(boolean.class));
+        assertEquals("TMap", second.getNative(HashMap.class).getName());
+
+        // Types, registered into one provider, are invisible to others
+        first.register("custom.Type", plain("FCustomType", Struct));
+        assertEquals("FCustomType", first.get("Type").toString());
+
+        try
+        {
+            second.get("custom.Type");
+            fail("'custom.Type' was expected to be invisible");
+        }
+        catch (RuntimeException e)
+        {
+            assertEquals("Can't get a corresponding C++ type for custom.Type", e.getMessage());
+        }
+
+        // Thus registering it again elsewhere isn't a conflict
+        final TypesProvider third = new UnrealTypesProvider();
+        third.register("custom.Type", plain("FCustomType", Struct));
+        assertEquals("FCustomType", third.get("custom.Type").toString());
+    }
+
+    @Test
+    public void cachedTypeTest()
+    {
+        final TypesProvider provider = new UnrealTypesProvider();
+
+        final CppType map = provider.get("map<string, int32>");
+        assertSame(map, provider.get("map<string, int32>"));
+
+        // A new scope might change what names resolve to
+        final SymbolTable table = new SymbolTable();
+        table.register("a", "a.Message", plain("FA_Message", Struct));
+        table.register("b", "b.Message", plain("FB_Message", Struct));
+
+        provider.setScope(table.scope(singletonList("a")));
+        assertEquals("FA_Message", provider.get("Message").toString());
+
+        provider.setScope(table.scope(singletonList("b")));
+        assertEquals("FB_Message", provider.get("Message").toString());
+    }
+
+    @Test
+    public void shortNameTest()
+    {
+        final SymbolTable table = new SymbolTable();
+        table.register("math", "common.math.Vector3", plain("FMath_Vector3", Struct));
+        table.register("physics", "physics.Vector3", plain("FPhysics_Vector3", Struct));
+        table.register("physics", "physics.MyVector3", plain("FPhysics_MyVector3", Struct));
+
+        final TypesProvider provider = new UnrealTypesProvider();
+        provider.setScope(table.scope(singletonList("math")));
+
+        assertEquals("FMath_Vector3", provider.get("Vector3").toString());
+        assertEquals("FMath_Vector3", provider.get("math.Vector3").toString());
+        assertEquals("TArray<FMath_Vector3>", provider.arrayOf(provider.get("Vector3")).toString());
+
+        // Only whole segments are matched
+        try
+        {
+            provider.get("ath.Vector3");
+            fail("'ath.Vector3' was expected not to be found");
+        }
+        catch (RuntimeException e)
+        {
+            assertEquals("Can't get a corresponding C++ type for ath.Vector3", e.getMessage());
+        }
+
+        // Qualified names still work if a short name is ambiguous
+        provider.setScope(table.scope(asList("math", "physics")));
+        assertEquals("FPhysics_Vector3", provider.get("physics.Vector3").toString());
+        assertEquals("FPhysics_MyVector3", provider.get("MyVector3").toString());
+
+        try
+        {
+            provider.get("Vector3");
+            fail("'Vector3' was expected to be ambiguous");
+        }
+        catch (RuntimeException e)
+        {
+            assertEquals("Cannot determine best possible type for Vector3 out of 2 options", e.getMessage());
+        }
+    }
+
+    @Test
+    public void invalidTypeTest()
+    {
+        final TypesProvider provider = new UnrealTypesProvider();
+
+        for (final String invalid : asList("", "1int", "map<", "map<>", "map<string,>", "map<string, int32",
+                "map<string, int32>>", "map<string, map<int32, string>", "map<string int32>", "string>"))
+        {
+            try
+            {
+                provider.get(invalid);
+                fail("'" + invalid + "' was expected to be rejected");
+            }
+            catch (RuntimeException ignored)
+            {
+                // expected
+            }
+        }
+    }
+}
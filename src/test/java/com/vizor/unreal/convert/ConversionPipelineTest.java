@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.util.Shard;
+import com.vizor.unreal.writer.MemoryOutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.write;
+import static java.nio.file.Paths.get;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConversionPipelineTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MemoryOutputSink sink = new MemoryOutputSink();
+
+    private Path srcPath;
+    private Config config;
+
+    @Before
+    public void setUp()
+    {
+        final Path root = folder.getRoot().toPath();
+        srcPath = root.resolve("protos");
+
+        config = Config.get().copy();
+        config.setSrcPath(srcPath.toString());
+        config.setDstPublicPath(root.resolve("Public").toString());
+        config.setDstPrivatePath(root.resolve("Private").toString());
+        config.setIncludePath("GrpcClient");
+    }
+
+    @Test
+    public void parseFailureTest() throws IOException
+    {
+        writeProto("common/math.proto", "package common;\n\nmessage Vector3 {\n  float x = 1;\n}\n");
+        writeProto("game/broken.proto", "package game;\n\nmessage Broken {\n  float x = ;\n}\n");
+        writeProto("game/invalid.proto", "package game;\n\nmessage {\n}\n");
+
+        // All broken files are reported at once
+        final String message = convertFailing();
+        assertTrue(message, message.startsWith("Unable to parse 2 proto-file(s)"));
+        assertTrue(message, message.contains("broken.proto"));
+        assertTrue(message, message.contains("invalid.proto"));
+    }
+
+    @Test
+    public void generateFailureTest() throws IOException
+    {
+        writeProto("game/player.proto", "package game;\n\nmessage Player {\n  Unknown unknown = 1;\n}\n");
+
+        final String message = convertFailing();
+        assertTrue(message, message.startsWith("Failed to process"));
+        assertTrue(message, message.contains("player.proto"));
+    }
+
+    @Test
+    public void importCycleTest() throws IOException
+    {
+        writeProto("game/player.proto", "package game;\n\nimport \"game/team.proto\";\n\n" +
+                "message Player {\n  string name = 1;\n}\n");
+        writeProto("game/team.proto", "package game;\n\nimport \"game/player.proto\";\n\n" +
+                "message Team {\n  repeated Player players = 1;\n}\n");
+        writeProto("common/math.proto", "package common;\n\nmessage Vector3 {\n  float x = 1;\n}\n");
+
+        final String message = convertFailing();
+        assertEquals("Proto files can't import each other: [" + get("game/player.proto") + ", " +
+                get("game/team.proto") + "]", message);
+    }
+
+    @Test
+    public void missingImportTest() throws IOException
+    {
+        // Imports outside of the source folder are neither parsed, nor waited for
+        writeProto("game/player.proto", "package game;\n\nimport \"common/missing.proto\";\n\n" +
+                "message Player {\n  string name = 1;\n}\n");
+
+        new Converter(config, false, sink).convert();
+        assertEquals(names("Player"), getProtoNames());
+
+        // But their types remain unknown
+        writeProto("game/team.proto", "package game;\n\nimport \"common/missing.proto\";\n\n" +
+                "message Team {\n  Missing missing = 1;\n}\n");
+
+        final String message = convertFailing();
+        assertTrue(message, message.startsWith("Failed to process"));
+        assertTrue(message, message.contains("team.proto"));
+    }
+
+    @Test
+    public void shardTest() throws IOException
+    {
+        writeProto("common/math.proto", "package common;\n\nmessage Vector3 {\n  float x = 1;\n}\n");
+        writeProto("game/player.proto", "package game;\n\nimport \"common/math.proto\";\n\n" +
+                "message Player {\n  string name = 1;\n  common.Vector3 position = 2;\n  int64 id = 3;\n}\n\n" +
+                "message Npc {\n  string name = 1;\n  common.Vector3 position = 2;\n}\n");
+        writeProto("game/item.proto", "package game;\n\nmessage Item {\n  string name = 1;\n}\n");
+
+        final List<Path> paths = asList(srcPath.resolve("common/math.proto"), srcPath.resolve("game/player.proto"),
+                srcPath.resolve("game/item.proto"));
+
+        final Set<String> all = new TreeSet<>();
+        try (final GenerationScheduler scheduler = new GenerationScheduler(2))
+        {
+            for (int index = 1; index <= 2; index++)
+            {
+                final Shard shard = Shard.parse(index + "/2");
+                final Set<Path> picked = ShardPlanner.plan(srcPath, paths, shard, scheduler);
+
+                // Imported files, which belong to another shard, are parsed, but aren't converted
+                final MemoryOutputSink shardSink = new MemoryOutputSink();
+                config.setShard(shard.toString());
+                new Converter(config, false, shardSink).convert();
+
+                final Set<String> expected = picked.stream()
+                    .map(p -> capitalize(p.getFileName().toString().replace(".proto", "")))
+                    .collect(toSet());
+                assertEquals(expected, getProtoNames(shardSink));
+
+                // Costs split the files so that the importer and the imported file end up in different shards
+                assertTrue(!expected.contains("Player") || !expected.contains("Math"));
+
+                all.addAll(expected);
+            }
+        }
+
+        assertEquals(names("Item", "Math", "Player"), all);
+    }
+
+    private void writeProto(final String name, final String body) throws IOException
+    {
+        final Path path = srcPath.resolve(name);
+
+        createDirectories(path.getParent());
+        write(path, ("syntax = \"proto3\";\n" + body).getBytes(UTF_8));
+    }
+
+    private String convertFailing()
+    {
+        try
+        {
+            new Converter(config, false, sink).convert();
+        }
+        catch (RuntimeException e)
+        {
+            return e.getMessage();
+        }
+
+        fail("Conversion should have failed");
+        return null;
+    }
+
+    private Set<String> getProtoNames()
+    {
+        return getProtoNames(sink);
+    }
+
+    private static Set<String> getProtoNames(final MemoryOutputSink sink)
+    {
+        // Both 'Player.h' and 'PlayerCasts.cpp' belong to 'player.proto'
+        return sink.getFiles().keySet().stream()
+            .map(p -> p.getFileName().toString().replaceFirst("(Casts)?\\.(h|cpp)$", ""))
+            .collect(toSet());
+    }
+
+    private static Set<String> names(final String... names)
+    {
+        return new TreeSet<>(asList(names));
+    }
+
+    private static String capitalize(final String name)
+    {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.writer.DiskOutputSink;
+import com.vizor.unreal.writer.MemoryOutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Files.write;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConverterTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path publicPath;
+    private Path privatePath;
+    private Config config;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        final Path root = folder.getRoot().toPath();
+        final Path srcPath = root.resolve("protos");
+
+        publicPath = root.resolve("Public");
+        privatePath = root.resolve("Private");
+
+        writeProto(srcPath, "common/math.proto", "package common;\n\n" +
+                "message Vector3 {\n  float x = 1;\n  float y = 2;\n  float z = 3;\n}\n");
+        writeProto(srcPath, "game/player.proto", "package game;\n\nimport \"common/math.proto\";\n\n" +
+                "message Player {\n  string name = 1;\n  common.Vector3 position = 2;\n}\n\n" +
+                "message GetPlayerRequest {\n  int64 id = 1;\n}\n\n" +
+                "service PlayerService {\n  rpc GetPlayer (GetPlayerRequest) returns (Player);\n}\n");
+
+        config = Config.get().copy();
+        config.setSrcPath(srcPath.toString());
+        config.setDstPublicPath(publicPath.toString());
+        config.setDstPrivatePath(privatePath.toString());
+        config.setIncludePath("GrpcClient");
+    }
+
+    @Test
+    public void memorySinkTest()
+    {
+        final MemoryOutputSink sink = new MemoryOutputSink();
+        new Converter(config, false, sink).convert();
+
+        final Set<Path> expected = new TreeSet<>(asList(
+            publicPath.resolve("Math.h"),
+            publicPath.resolve("MathCasts.h"),
+            publicPath.resolve("Player.h"),
+            publicPath.resolve("PlayerCasts.h"),
+            privatePath.resolve("Math.cpp"),
+            privatePath.resolve("MathCasts.cpp"),
+            privatePath.resolve("Player.cpp"),
+            privatePath.resolve("PlayerCasts.cpp")
+        ));
+        assertEquals(expected, sink.getFiles().keySet());
+
+        final String math = new String(sink.get(publicPath.resolve("Math.h")), UTF_8);
+        assertTrue(math, math.matches("(?s).*struct \\w+ FMath_Vector3\\b.*"));
+
+        // Imported files are included, services get their clients
+        final String player = new String(sink.get(publicPath.resolve("Player.h")), UTF_8);
+        assertTrue(player, player.contains("#include \"common/math/Math.h\""));
+        assertTrue(player, player.contains("FMath_Vector3 Position;"));
+        assertTrue(player, player.contains("class UPlayerServiceRpcClient"));
+
+        // Nothing is written into the file system
+        assertFalse(exists(publicPath));
+        assertFalse(exists(privatePath));
+    }
+
+    @Test
+    public void sameAsDiskTest() throws IOException
+    {
+        final MemoryOutputSink sink = new MemoryOutputSink();
+        new Converter(config, false, sink).convert();
+        new Converter(config, false, new DiskOutputSink()).convert();
+
+        final Set<Path> written = new TreeSet<>();
+        for (final Path dst : asList(publicPath, privatePath))
+        {
+            try (final Stream<Path> paths = walk(dst))
+            {
+                paths.filter(Files::isRegularFile).forEach(written::add);
+            }
+        }
+        assertEquals(sink.getFiles().keySet(), written);
+
+        for (final Map.Entry<Path, byte[]> e : sink.getFiles().entrySet())
+            assertArrayEquals(e.getKey().toString(), e.getValue(), readAllBytes(e.getKey()));
+    }
+
+    private static void writeProto(final Path srcPath, final String name, final String body) throws IOException
+    {
+        final Path path = srcPath.resolve(name);
+
+        createDirectories(path.getParent());
+        write(path, ("syntax = \"proto3\";\n" + body).getBytes(UTF_8));
+    }
+}
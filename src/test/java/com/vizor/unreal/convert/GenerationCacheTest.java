@@ -0,0 +1,236 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.SyntheticCorpus;
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.writer.MemoryOutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GenerationCacheTest
+{
+    private static final byte[] marker = "// Taken from the cache\n".getBytes(UTF_8);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path srcPath;
+    private Path cacheDir;
+    private Config config;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        final Path root = folder.getRoot().toPath();
+
+        srcPath = root.resolve("protos");
+        cacheDir = root.resolve("cache");
+        new SyntheticCorpus(0).files(6).messages(2).depth(2).write(srcPath);
+
+        config = Config.get().copy();
+        config.setSrcPath(srcPath.toString());
+        config.setDstPublicPath(root.resolve("Public").toString());
+        config.setDstPrivatePath(root.resolve("Private").toString());
+        config.setIncludePath("GrpcClient");
+        config.setCacheDir(cacheDir.toString());
+    }
+
+    @Test
+    public void hitTest() throws IOException
+    {
+        final Map<Path, byte[]> generated = convert();
+        final List<Path> entries = getEntries();
+
+        // One entry per proto file
+        assertEquals(6, entries.size());
+
+        // Outputs are taken from the entries, rather than generated again
+        for (final Path entry : entries)
+            rewrite(entry, GenerationCache.formatVersion, marker);
+
+        final Map<Path, byte[]> cached = convert();
+        assertEquals(generated.keySet(), cached.keySet());
+        cached.values().forEach(content -> assertArrayEquals(marker, content));
+    }
+
+    @Test
+    public void missTest() throws IOException
+    {
+        final Map<Path, byte[]> generated = convert();
+        for (final Path entry : getEntries())
+            rewrite(entry, GenerationCache.formatVersion, marker);
+
+        // Options, affecting the generated code, change all keys
+        config.setCompanyName("Other");
+
+        final Map<Path, byte[]> converted = convert();
+        assertEquals(generated.keySet(), converted.keySet());
+        converted.values().forEach(content -> assertFalse(Arrays.equals(marker, content)));
+        assertEquals(12, getEntries().size());
+
+        // So does a change of a proto file (and of anything importing it)
+        final Path changed = getProtoFiles().get(0);
+        write(changed, "\n// Changed\n".getBytes(UTF_8), APPEND);
+
+        convert();
+        assertTrue(getEntries().size() > 12);
+    }
+
+    @Test
+    public void corruptEntryTest() throws IOException
+    {
+        final Map<Path, byte[]> generated = convert();
+        final List<Path> entries = getEntries();
+
+        // A truncated entry, and an entry claiming a huge content
+        write(entries.get(0), new byte[] {0, 0, 0, 1, 0, 0});
+        for (final Path entry : entries.subList(1, entries.size()))
+            corruptLength(entry);
+
+        assertSameContent(generated, convert());
+
+        // Broken entries are replaced with valid ones
+        for (final Path entry : getEntries())
+            rewrite(entry, GenerationCache.formatVersion, marker);
+
+        convert().values().forEach(content -> assertArrayEquals(marker, content));
+    }
+
+    @Test
+    public void formatVersionTest() throws IOException
+    {
+        final Map<Path, byte[]> generated = convert();
+
+        // Entries of another format are ignored
+        for (final Path entry : getEntries())
+            rewrite(entry, GenerationCache.formatVersion + 1, marker);
+
+        assertSameContent(generated, convert());
+    }
+
+    private Map<Path, byte[]> convert()
+    {
+        final MemoryOutputSink sink = new MemoryOutputSink();
+        new Converter(config, false, sink).convert();
+
+        assertFalse(sink.getFiles().isEmpty());
+        return sink.getFiles();
+    }
+
+    private List<Path> getEntries() throws IOException
+    {
+        try (final Stream<Path> paths = walk(cacheDir))
+        {
+            return paths.filter(p -> p.toString().endsWith(".entry")).sorted().collect(toList());
+        }
+    }
+
+    private List<Path> getProtoFiles() throws IOException
+    {
+        try (final Stream<Path> paths = walk(srcPath))
+        {
+            return paths.filter(p -> p.toString().endsWith(".proto")).sorted().collect(toList());
+        }
+    }
+
+    /**
+     * Keeps names of files in the entry, but replaces their content.
+     */
+    private static void rewrite(final Path entry, final int version, final byte[] content) throws IOException
+    {
+        final List<String> names = readNames(entry);
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(newOutputStream(entry))))
+        {
+            out.writeInt(version);
+            out.writeInt(names.size());
+
+            for (final String name : names)
+            {
+                out.writeUTF(name);
+                out.writeInt(content.length);
+                out.write(content);
+            }
+        }
+    }
+
+    private static void corruptLength(final Path entry) throws IOException
+    {
+        final List<String> names = readNames(entry);
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(newOutputStream(entry))))
+        {
+            out.writeInt(GenerationCache.formatVersion);
+            out.writeInt(names.size());
+            out.writeUTF(names.get(0));
+            out.writeInt(Integer.MAX_VALUE - 8);
+        }
+    }
+
+    private static List<String> readNames(final Path entry) throws IOException
+    {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(newInputStream(entry))))
+        {
+            in.readInt();
+            final int numFiles = in.readInt();
+
+            final List<String> names = new ArrayList<>(numFiles);
+            for (int i = 0; i < numFiles; i++)
+            {
+                names.add(in.readUTF());
+
+                final byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+            }
+
+            return names;
+        }
+    }
+
+    private static void assertSameContent(final Map<Path, byte[]> expected, final Map<Path, byte[]> actual)
+    {
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((path, content) -> assertArrayEquals(path.toString(), content, actual.get(path)));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.config.Config;
+import com.vizor.unreal.writer.GeneratedFile;
+import com.vizor.unreal.writer.MemoryOutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GenerationManifestTest
+{
+    private static final byte[] marker = "// Left from the previous run\n".getBytes(UTF_8);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MemoryOutputSink sink = new MemoryOutputSink();
+
+    private Path srcPath;
+    private Config config;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        final Path root = folder.getRoot().toPath();
+        srcPath = root.resolve("protos");
+
+        // Player imports Math, Item is on its own
+        writeProto("common/math.proto", "package common;\n\nmessage Vector3 {\n  float x = 1;\n  float y = 2;\n}\n");
+        writeProto("game/player.proto", "package game;\n\nimport \"common/math.proto\";\n\n" +
+                "message Player {\n  Vector3 position = 1;\n}\n");
+        writeProto("game/item.proto", "package game;\n\nmessage Item {\n  string name = 1;\n}\n");
+
+        config = Config.get().copy();
+        config.setSrcPath(srcPath.toString());
+        config.setDstPublicPath(root.resolve("Public").toString());
+        config.setDstPrivatePath(root.resolve("Private").toString());
+        config.setIncludePath("GrpcClient");
+        config.setIncremental(true);
+    }
+
+    @Test
+    public void unchangedTest()
+    {
+        convert();
+        markOutputs();
+
+        // Nothing has changed, so nothing is converted
+        convert();
+        assertMarked("Math", true);
+        assertMarked("Player", true);
+        assertMarked("Item", true);
+    }
+
+    @Test
+    public void importersRebuiltTest() throws IOException
+    {
+        convert();
+        markOutputs();
+
+        // A change of an imported file affects everything importing it
+        write(srcPath.resolve("common/math.proto"), "\n// Changed\n".getBytes(UTF_8), APPEND);
+
+        convert();
+        assertMarked("Math", false);
+        assertMarked("Player", false);
+        assertMarked("Item", true);
+
+        // A change of an importing file doesn't affect imported ones
+        markOutputs();
+        write(srcPath.resolve("game/player.proto"), "\n// Changed\n".getBytes(UTF_8), APPEND);
+
+        convert();
+        assertMarked("Math", true);
+        assertMarked("Player", false);
+        assertMarked("Item", true);
+    }
+
+    @Test
+    public void removedTest() throws IOException
+    {
+        convert();
+        assertEquals(4, getOutputs("Item").size());
+
+        delete(srcPath.resolve("game/item.proto"));
+
+        convert();
+        assertTrue(getOutputs("Item").isEmpty());
+        assertEquals(4, getOutputs("Math").size());
+        assertEquals(4, getOutputs("Player").size());
+    }
+
+    @Test
+    public void outputFingerprintTest()
+    {
+        convert();
+        markOutputs();
+
+        // Options, affecting the generated code, invalidate everything
+        config.setCompanyName("Other");
+
+        convert();
+        assertMarked("Math", false);
+        assertMarked("Player", false);
+        assertMarked("Item", false);
+    }
+
+    private void writeProto(final String name, final String body) throws IOException
+    {
+        final Path path = srcPath.resolve(name);
+
+        createDirectories(path.getParent());
+        write(path, ("syntax = \"proto3\";\n" + body).getBytes(UTF_8));
+    }
+
+    private void convert()
+    {
+        new Converter(config, false, sink).convert();
+    }
+
+    /**
+     * Replaces content of all generated files, so files, generated again by the next run, can be told apart.
+     */
+    private void markOutputs()
+    {
+        for (final Path path : getOutputs(""))
+            sink.write(new GeneratedFile(path, marker));
+    }
+
+    private void assertMarked(final String name, final boolean marked)
+    {
+        final List<Path> outputs = getOutputs(name);
+        assertEquals(4, outputs.size());
+
+        for (final Path path : outputs)
+        {
+            if (marked)
+                assertArrayEquals(path.toString(), marker, sink.get(path));
+            else
+                assertFalse(path.toString(), Arrays.equals(marker, sink.get(path)));
+        }
+    }
+
+    /**
+     * @param name Name of a proto file, or an empty string for all of them.
+     * @return Generated files of the proto file, except the manifest.
+     */
+    private List<Path> getOutputs(final String name)
+    {
+        return sink.getFiles().keySet().stream()
+            .filter(p -> !p.getFileName().toString().startsWith("."))
+            .filter(p -> name.isEmpty() || name.equals(getProtoName(p)))
+            .collect(toList());
+    }
+
+    private static String getProtoName(final Path output)
+    {
+        // Both 'Player.h' and 'PlayerCasts.cpp' belong to 'player.proto'
+        return output.getFileName().toString().replaceFirst("(Casts)?\\.(h|cpp)$", "");
+    }
+}
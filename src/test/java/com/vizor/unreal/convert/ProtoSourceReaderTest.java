@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ProtoSourceReaderTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void normalizationTest() throws IOException
+    {
+        final ProtoSourceReader reader = new ProtoSourceReader();
+
+        assertEquals("", reader.read(createSource("")));
+        assertEquals("message A {}\n", reader.read(createSource("message A {}\n")));
+
+        // Byte order mark is dropped, but only at the very beginning
+        assertEquals("syntax;\n", reader.read(createSource("\uFEFFsyntax;\n")));
+        assertEquals("a\uFEFFb", reader.read(createSource("a\uFEFFb")));
+
+        // All kinds of line breaks become '\n'
+        assertEquals("a\nb\n", reader.read(createSource("a\r\nb\r\n")));
+        assertEquals("a\nb\n", reader.read(createSource("a\rb\r")));
+        assertEquals("a\n\nb\n\n", reader.read(createSource("a\r\rb\n\r\n")));
+
+        // Non-ASCII text is decoded as UTF-8
+        final String comment = "// \u041F\u0440\u0438\u0432\u0435\u0442";
+        assertEquals(comment + "\n", reader.read(createSource(comment + "\r\n")));
+    }
+
+    @Test
+    public void largeFileTest() throws IOException
+    {
+        final ProtoSourceReader reader = new ProtoSourceReader();
+
+        // Files over a megabyte get buffers of their own, the result is the same
+        final StringBuilder large = new StringBuilder("\uFEFF");
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; large.length() < (3 << 19); i++)
+        {
+            large.append("message M").append(i).append(" {}\r\n");
+            expected.append("message M").append(i).append(" {}\n");
+        }
+
+        assertEquals("a\nb", reader.read(createSource("a\r\nb")));
+        assertEquals(expected.toString(), reader.read(createSource(large.toString())));
+
+        // The reusable buffers still work after a large file
+        assertEquals("c\nd", reader.read(createSource("c\r\nd")));
+    }
+
+    @Test
+    public void malformedTest() throws IOException
+    {
+        final Path malformed = folder.newFile().toPath();
+        write(malformed, new byte[] { 'a', (byte) 0xC3, (byte) 0x28, 'b' });
+
+        // Malformed UTF-8 is reported rather than silently replaced
+        try
+        {
+            new ProtoSourceReader().read(malformed);
+            fail("Malformed UTF-8 should not be read");
+        }
+        catch (CharacterCodingException e)
+        {
+            // Expected
+        }
+    }
+
+    private Path createSource(final String content) throws IOException
+    {
+        final Path path = folder.newFile().toPath();
+        write(path, content.getBytes(UTF_8));
+        return path;
+    }
+}
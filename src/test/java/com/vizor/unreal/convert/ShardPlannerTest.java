@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.convert;
+
+import com.vizor.unreal.SyntheticCorpus;
+import com.vizor.unreal.util.Shard;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import static java.nio.file.Paths.get;
+import static java.util.Collections.max;
+import static java.util.Collections.reverse;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardPlannerTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void planTest() throws IOException
+    {
+        final Path root = folder.getRoot().toPath();
+        final SyntheticCorpus corpus = new SyntheticCorpus(0).files(40).messages(4).depth(4);
+        corpus.write(root);
+
+        final SortedMap<String, String> sources = corpus.generate();
+
+        final List<Path> paths = sources.keySet().stream().map(root::resolve).collect(toList());
+        final Set<Path> all = sources.keySet().stream().map(Paths::get).collect(toSet());
+
+        final Map<Path, Long> costs = new HashMap<>();
+        sources.forEach((p, source) -> costs.put(get(p), ShardPlanner.estimateCost(source)));
+        final long maxCost = max(costs.values());
+
+        // Files might be listed in any order
+        final List<Path> reversed = new ArrayList<>(paths);
+        reverse(reversed);
+
+        try (final GenerationScheduler scheduler = new GenerationScheduler(4))
+        {
+            for (final int count : new int[] {1, 2, 3, 7})
+            {
+                final Set<Path> covered = new HashSet<>();
+                final List<Long> shardCosts = new ArrayList<>();
+
+                for (int index = 1; index <= count; index++)
+                {
+                    final Shard shard = Shard.parse(index + "/" + count);
+                    final Set<Path> picked = ShardPlanner.plan(root, paths, shard, scheduler);
+
+                    // Every process computes the same split
+                    assertEquals(picked, ShardPlanner.plan(root, reversed, shard, scheduler));
+
+                    // Shards are disjoint
+                    for (final Path path : picked)
+                        assertTrue(path + " belongs to several shards", covered.add(path));
+
+                    shardCosts.add(picked.stream().mapToLong(costs::get).sum());
+                }
+
+                // And cover every file
+                assertEquals(all, covered);
+
+                // Costs of shards differ by no more than the cost of a single file
+                final long cheapest = shardCosts.stream().mapToLong(c -> c).min().getAsLong();
+                final long dearest = shardCosts.stream().mapToLong(c -> c).max().getAsLong();
+                assertTrue(shardCosts.toString(), dearest - cheapest <= maxCost);
+            }
+        }
+    }
+
+    @Test
+    public void unreadableTest() throws IOException
+    {
+        final Path root = folder.getRoot().toPath();
+        final Path missing = root.resolve("missing.proto");
+
+        final List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            paths.add(folder.newFile("file" + i + ".proto").toPath());
+        paths.add(missing);
+
+        try (final GenerationScheduler scheduler = new GenerationScheduler(4))
+        {
+            ShardPlanner.plan(root, paths, Shard.parse("1/2"), scheduler);
+            fail("Planning should fail if a proto file can't be read");
+        }
+        catch (RuntimeException e)
+        {
+            // Tells which file is missing
+            assertTrue(e.getMessage(), e.getMessage().contains(missing.toString()));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Vizor Games LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.vizor.unreal.daemon;
+
+import com.vizor.unreal.daemon.DaemonProtocol.Request;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+import static java.lang.System.getProperty;
+import static java.lang.System.setProperty;
+import static java.nio.file.Files.getFileAttributeView;
+import static java.nio.file.Files.getPosixFilePermissions;
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class DaemonProtocolTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private String userHome;
+
+    @Before
+    public void setUp()
+    {
+        userHome = getProperty("user.home");
+        setProperty("user.home", folder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown()
+    {
+        setProperty("user.home", userHome);
+    }
+
+    @Test
+    public void tokenTest() throws IOException
+    {
+        assertNull(DaemonProtocol.readToken());
+
+        final String token = DaemonProtocol.getOrCreateToken();
+        assertEquals(token, DaemonProtocol.readToken());
+        assertEquals(token, DaemonProtocol.getOrCreateToken());
+
+        // Nobody but the owner may read the token
+        if (getFileAttributeView(DaemonProtocol.getTokenPath(), PosixFileAttributeView.class) != null)
+        {
+            assertEquals(fromString("rw-------"), getPosixFilePermissions(DaemonProtocol.getTokenPath()));
+            assertEquals(fromString("rwx------"), getPosixFilePermissions(DaemonProtocol.getTokenPath().getParent()));
+        }
+    }
+
+    @Test
+    public void requestTest() throws IOException
+    {
+        final Request request = new Request("/work", "/work/config.yml", new String[] {"--src_path", "protos"});
+
+        final Request read = DaemonProtocol.readRequest(write("secret", request), "secret");
+        assertEquals(request.workingDir, read.workingDir);
+        assertEquals(request.configPath, read.configPath);
+        assertArrayEquals(request.args, read.args);
+
+        try
+        {
+            DaemonProtocol.readRequest(write("guess", request), "secret");
+            fail("A request with a wrong token must be rejected");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+    }
+
+    private static DataInputStream write(final String token, final Request request) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DaemonProtocol.writeRequest(new DataOutputStream(bytes), token, request);
+
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}